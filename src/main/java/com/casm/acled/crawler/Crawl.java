@@ -1,12 +1,18 @@
 package com.casm.acled.crawler;
 
+import com.casm.acled.crawler.management.AdaptiveDelayResolver;
 import com.casm.acled.crawler.management.CrawlArgs;
 import com.casm.acled.crawler.management.NorconexConfiguration;
 import com.casm.acled.crawler.scraper.*;
+import com.casm.acled.crawler.reporting.Event;
+import com.casm.acled.crawler.reporting.Report;
 import com.casm.acled.crawler.reporting.Reporter;
 import com.casm.acled.crawler.scraper.dates.*;
 import com.casm.acled.crawler.scraper.keywords.ExcludingKeywordFilter;
 import com.casm.acled.crawler.scraper.keywords.KeywordTagger;
+import com.casm.acled.crawler.scraper.keywords.MultiKeywordTagger;
+import com.casm.acled.crawler.spring.DiscoveryCache;
+import com.casm.acled.crawler.util.Util;
 import com.casm.acled.entities.source.Source;
 import com.casm.acled.entities.sourcelist.SourceList;
 import com.google.common.collect.ImmutableList;
@@ -18,7 +24,6 @@ import com.norconex.collector.http.url.impl.GenericURLNormalizer;
 import com.norconex.importer.handler.IImporterHandler;
 import com.norconex.importer.handler.filter.OnMatch;
 import com.norconex.importer.handler.filter.impl.DateMetadataFilter;
-import com.norconex.importer.handler.transformer.impl.ReplaceTransformer;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -29,21 +34,21 @@ import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import com.norconex.importer.handler.tagger.impl.*;
 
-import com.norconex.collector.http.robot.RobotsTxt;
-import com.norconex.collector.http.robot.impl.StandardRobotsTxtProvider;
 import org.apache.commons.lang3.ArrayUtils;
-import org.apache.http.client.HttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import com.norconex.collector.http.delay.impl.GenericDelayResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 public class Crawl {
 
+    protected static final Logger logger = LoggerFactory.getLogger(Crawl.class);
+
 //    private static final Path ALL_SCRAPERS = Paths.get("/home/sw206/git/acled-scrapers");
 //    private static final Path CACHE_DIR = Paths.get("/home/sw206/git/springcrawler/balkans_scrapers");
 
@@ -56,6 +61,8 @@ public class Crawl {
     public static final String TO = "TO";
     public static final String ARTICLE_LIMIT = "ARTICLE_LIMIT";
     public static final String DEPTH_LIMIT = "DEPTH_LIMIT";
+    // robots.txt crawl-delays in seconds above this are ignored, as they would stall the crawl
+    private static final float ROBOTS_DELAY_LIMIT = 100;
 
     private final LocalDate from;
     private final LocalDate to;
@@ -68,6 +75,10 @@ public class Crawl {
 
     private final Reporter reporter;
 
+    private CompositeDateParser dateParser;
+    // this crawl's date service lookups, shared by its date parsers
+    private final DateParsingServiceClient.Usage dateServiceUsage = new DateParsingServiceClient.Usage();
+
     private class RootLogAppenderClearingURLNormaliser implements IURLNormalizer {
         private final GenericURLNormalizer genericURLNormalizer;
         public RootLogAppenderClearingURLNormaliser() {
@@ -83,7 +94,7 @@ public class Crawl {
         }
     }
 
-    public Crawl(CrawlArgs args, ACLEDCommitter committer, Reporter reporter, List<String> sitemaps) {
+    public Crawl(CrawlArgs args, ACLEDCommitter committer, Reporter reporter, List<String> sitemaps, DiscoveryCache discoveryCache) {
         this.source = args.source;
         this.from = args.from;
         this.to = args.to;
@@ -104,23 +115,19 @@ public class Crawl {
         config = new NorconexConfiguration(workingDir.resolve(scraperCachePath), args);
         config.crawler().setUrlNormalizer(new RootLogAppenderClearingURLNormaliser());
 
-        // added for checking the crawlDelay in robots.txt
-        String url = source.get(Source.LINK);
-
-        StandardRobotsTxtProvider srtp  = new StandardRobotsTxtProvider();
-
-        HttpClient httpClient = HttpClientBuilder.create().build();
+        // added for checking the crawlDelay in robots.txt, usually already cached by sitemap discovery
+        String url = Util.ensureHTTP(source.get(Source.LINK), false);
 
-        RobotsTxt robotsTxt = srtp.getRobotsTxt(httpClient, url, "CASM Tech");
+        float robotsDelay = discoveryCache.crawlDelay(url, "CASM Tech");
 
-        float robotsDelay = robotsTxt.getCrawlDelay();
-
-        if (robotsDelay > 100) { // certain threshold
-            GenericDelayResolver gdr = new GenericDelayResolver();
-            gdr.setDefaultDelay((config.getPoliteness() <= 50) ? 50 : config.getPoliteness()); // safety check to avoid to to small a delay
-            gdr.setIgnoreRobotsCrawlDelay(true); // disable the crawlDelay in robots.txt file
-            gdr.setScope(GenericDelayResolver.SCOPE_SITE);
-            config.crawler().setDelayResolver(gdr);
+        // the delay resolver honours it, even above its max delay, unless it's high enough to stall the crawl
+        if (robotsDelay > ROBOTS_DELAY_LIMIT) {
+            logger.info("ignoring robots.txt crawl-delay of {}s for {}, delay kept within {} - {} ms", robotsDelay, url,
+                    config.delayResolver().getMinDelay(), config.delayResolver().getMaxDelay());
+            config.delayResolver().setIgnoreRobotsCrawlDelay(true);
+        } else if (robotsDelay * 1000 > config.delayResolver().getMaxDelay()) {
+            logger.info("honouring robots.txt crawl-delay of {}s for {}, above the max delay of {} ms", robotsDelay, url,
+                    config.delayResolver().getMaxDelay());
         }
 
 
@@ -172,10 +179,10 @@ public class Crawl {
         }
 
         if(!args.skipKeywords) {
-            for (SourceList sourceList : args.sourceLists) {
-                KeywordTagger keywordTagger = keywordTagger(sourceList);
-                postParsers.add(keywordTagger);
-            }
+            // One tagger for all lists, so each article is only analyzed once
+            MultiKeywordTagger keywordTagger = new MultiKeywordTagger(ScraperFields.SCRAPED_ARTICLE, args.sourceLists);
+            keywordTagger.setLazyHighlights(args.flagSet != null && args.flagSet.contains(CrawlArgs.Flags.LAZY_HIGHLIGHTS));
+            postParsers.add(keywordTagger);
         } else {
             postParsers.add(new KeywordTagger(ScraperFields.SCRAPED_ARTICLE, "", "pass"));
         }
@@ -191,11 +198,9 @@ public class Crawl {
         }
 
 
+        // parses the page once, dropping scripts and styles itself, see ACLEDTagger
         DOMTagger documentTagger = new ACLEDTaggerFactory(args.scrapersDir, source).get();
-        ReplaceTransformer documentTransfomer = new ReplaceTransformer();
-        documentTransfomer.addReplacement("<script.*?>.*?<\\/script>", "");
 
-        preParsers.add(documentTransfomer);
         preParsers.add(documentTagger);
 
         config.importer().setPreParseHandlers(preParsers.toArray(new IImporterHandler[]{}));
@@ -257,7 +262,7 @@ public class Crawl {
         List<String> dateFormatSpecs = source.get(Source.DATE_FORMAT);
 
         String timezone = source.get(Source.TIMEZONE);
-        DateParser dateParser = CompositeDateParser.of(dateFormatSpecs, timezone);
+        DateParser dateParser = CompositeDateParser.adaptive(dateFormatSpecs, timezone, dateServiceUsage);
 //        DateParser dateParser = CompositeDateParser.of(dateFormatSpecs);
 
         DateMetadataFilter dateMetadataFilter = new ExcludingCustomDateMetadataFilter(source, ScraperFields.SCRAPED_DATE, dateParser, reporter);
@@ -272,7 +277,7 @@ public class Crawl {
         List<String> dateFormatSpecs = source.get(Source.DATE_FORMAT);
 
         String timezone = source.get(Source.TIMEZONE);
-        DateParser dateParser = CompositeDateParser.of(dateFormatSpecs, timezone);
+        dateParser = CompositeDateParser.adaptive(dateFormatSpecs, timezone, dateServiceUsage);
 
         DateTagger dateMetadataTagger = new DateTagger(source, ScraperFields.SCRAPED_DATE, dateParser, reporter);
         dateMetadataTagger.setFromTime(from);
@@ -326,6 +331,37 @@ public class Crawl {
 //        ErrorMailNotifier errorMailNotifier = new ErrorMailNotifier();
 //        collector.getCollectorConfig().setJobErrorListeners(errorMailNotifier);
         collector.getCollectorConfig().setSuiteLifeCycleListeners();
+
         collector.start(true);
+
+        if(dateParser != null) {
+            logger.info("date spec successes for {}: {}", id(source), dateParser.getSuccessCounts());
+        }
+
+        // counted by this crawl's own date parsers, as other crawls share the client
+        long hits = dateServiceUsage.hits();
+        long misses = dateServiceUsage.misses();
+        long requests = dateServiceUsage.requests();
+        long requestNanos = dateServiceUsage.requestNanos();
+        if(hits + misses > 0) {
+            reporter.report(Report.of(Event.DATE_SERVICE_USAGE, source.id())
+                    .message("hits=%d misses=%d requests=%d meanLatencyMs=%.1f", hits, misses, requests,
+                            requests == 0 ? 0.0 : requestNanos / 1e6 / requests));
+        }
+
+        for(Map.Entry<String, AdaptiveDelayResolver.Host> host : config.delayResolver().hosts().entrySet()) {
+            logger.info("politeness delay for {}: {}", host.getKey(), host.getValue());
+            reporter.report(Report.of(Event.POLITENESS_DELAY, source.id())
+                    .message("host=%s %s", host.getKey(), host.getValue()));
+        }
+    }
+
+    /**
+     * @return how many fetches in run() failed or got a 429 or 5xx response.
+     */
+    public long failedFetches() {
+        return config.delayResolver().hosts().values().stream()
+                .mapToLong(AdaptiveDelayResolver.Host::getBackoffs)
+                .sum();
     }
 }
@@ -0,0 +1,278 @@
+package com.casm.acled.crawler.management;
+
+import com.norconex.collector.http.delay.IDelayResolver;
+import com.norconex.collector.http.robot.RobotsTxt;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.utils.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Politeness delay per host that adapts to how the host responds, within [minDelay, maxDelay] ms.
+ *
+ * Each host starts at the initial delay. Fetches are reported back through observe() (see
+ * LimitedDocumentFetcher): a response moves the delay a quarter of the way towards the host's smoothed
+ * latency, so fast hosts are crawled faster and slow ones slower; a 429 or 503 doubles it and honours
+ * Retry-After, up to MAX_RETRY_AFTER rather than maxDelay; other 5xx responses and failed fetches raise it
+ * by half. A robots.txt crawl-delay is the floor, unless ignored, and is honoured even above maxDelay
+ * (Crawl ignores ones that would stall the crawl).
+ *
+ * As with GenericDelayResolver's site scope, the crawler's threads take turns per host, so hits on a host
+ * are always at least its delay apart. Each thread books its hit under the host's lock and sleeps outside
+ * it, so the others can book the hits after it meanwhile.
+ */
+public class AdaptiveDelayResolver implements IDelayResolver {
+
+    protected static final Logger logger = LoggerFactory.getLogger(AdaptiveDelayResolver.class);
+
+    // weight of the latest latency in the smoothed latency
+    private static final double LATENCY_WEIGHT = 0.2;
+    // least a backoff raises the delay by, so it still grows from a delay of 0
+    private static final long BACKOFF_STEP = 100;
+    // not in HttpStatus
+    private static final int TOO_MANY_REQUESTS = 429;
+    // longest pause a Retry-After gets, as for the robots.txt crawl-delays Crawl honours
+    public static final long MAX_RETRY_AFTER = TimeUnit.SECONDS.toMillis(100);
+
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    private long initialDelay;
+    private long minDelay;
+    private long maxDelay;
+    private boolean ignoreRobotsCrawlDelay;
+
+    /**
+     * Per host state, and its metrics.
+     */
+    public static class Host {
+        private long delay;
+        private double latency = -1;
+        private long lastHit;
+        private long blockedUntil;
+
+        private long requests;
+        private long waits;
+        private long waited;
+        private long backoffs;
+        private long retryAfters;
+
+        private Host(long delay) {
+            this.delay = delay;
+        }
+
+        public synchronized long getDelay() {
+            return delay;
+        }
+
+        /**
+         * @return the smoothed response time in ms, or -1 before the first response.
+         */
+        public synchronized double getLatency() {
+            return latency;
+        }
+
+        public synchronized long getRequests() {
+            return requests;
+        }
+
+        public synchronized long getWaits() {
+            return waits;
+        }
+
+        /**
+         * @return total ms spent waiting before hits on this host.
+         */
+        public synchronized long getWaited() {
+            return waited;
+        }
+
+        /**
+         * @return how often the delay was raised for a 429, 5xx or failed fetch.
+         */
+        public synchronized long getBackoffs() {
+            return backoffs;
+        }
+
+        public synchronized long getRetryAfters() {
+            return retryAfters;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("delayMs=%d meanLatencyMs=%.0f requests=%d waits=%d waitedMs=%d backoffs=%d retryAfters=%d",
+                    delay, latency, requests, waits, waited, backoffs, retryAfters);
+        }
+    }
+
+    public AdaptiveDelayResolver(long initialDelay, long minDelay, long maxDelay) {
+        setBounds(minDelay, maxDelay);
+        this.initialDelay = initialDelay;
+    }
+
+    /**
+     * Applies to hosts first seen after the call; the delays of the others are clamped at their next hit.
+     */
+    public void setBounds(long minDelay, long maxDelay) {
+        if(minDelay < 0 || maxDelay < minDelay) {
+            throw new IllegalArgumentException("bad delay bounds: " + minDelay + " - " + maxDelay);
+        }
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    public long getInitialDelay() {
+        return initialDelay;
+    }
+
+    public void setInitialDelay(long initialDelay) {
+        this.initialDelay = initialDelay;
+    }
+
+    public long getMinDelay() {
+        return minDelay;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    public boolean isIgnoreRobotsCrawlDelay() {
+        return ignoreRobotsCrawlDelay;
+    }
+
+    public void setIgnoreRobotsCrawlDelay(boolean ignoreRobotsCrawlDelay) {
+        this.ignoreRobotsCrawlDelay = ignoreRobotsCrawlDelay;
+    }
+
+    @Override
+    public void delay(RobotsTxt robotsTxt, String url) {
+        long floor = minDelay;
+        if(!ignoreRobotsCrawlDelay && robotsTxt != null && robotsTxt.getCrawlDelay() >= 0) {
+            floor = Math.max(floor, (long) (robotsTxt.getCrawlDelay() * 1000));
+        }
+        delay(url, floor);
+    }
+
+    void delay(String url, long floor) {
+        String name = hostName(url);
+        Host host = host(name);
+        long delay;
+        long wait;
+        synchronized (host) {
+            host.delay = clamp(host.delay);
+            delay = Math.max(host.delay, floor);
+            long now = System.currentTimeMillis();
+            long next = Math.max(host.lastHit == 0 ? 0 : host.lastHit + delay, host.blockedUntil);
+            wait = Math.max(0, next - now);
+            // book the hit, so the next thread waits for it rather than for this one to wake
+            host.lastHit = now + wait;
+            host.requests++;
+            if(wait > 0) {
+                host.waits++;
+                host.waited += wait;
+            }
+        }
+        if(wait > 0) {
+            logger.debug("{}: waiting {} ms (delay {} ms)", name, wait, delay);
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Adjust the host's delay for how a fetch from it went.
+     *
+     * @param status the response status, or a negative value if the fetch failed.
+     * @param latency ms from sending the request to having read the response.
+     * @param retryAfter the response's Retry-After header, or null.
+     */
+    public void observe(String url, int status, long latency, String retryAfter) {
+        String name = hostName(url);
+        Host host = host(name);
+        synchronized (host) {
+            long before = host.delay;
+            if(status == TOO_MANY_REQUESTS || status == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+                host.delay = clamp(Math.max(Math.max(host.delay * 2, host.delay + BACKOFF_STEP), latency));
+                host.backoffs++;
+                long after = retryAfter(retryAfter);
+                if(after > 0) {
+                    after = Math.min(after, MAX_RETRY_AFTER);
+                    host.blockedUntil = Math.max(host.blockedUntil, System.currentTimeMillis() + after);
+                    host.retryAfters++;
+                }
+                logger.info("{}: {}, delay {} -> {} ms{}", name, status, before, host.delay,
+                        after > 0 ? ", retrying after " + after + " ms" : "");
+            } else if(status < 0 || status >= 500) {
+                host.delay = clamp(Math.max(host.delay + host.delay / 2, host.delay + BACKOFF_STEP));
+                host.backoffs++;
+                logger.info("{}: {}, delay {} -> {} ms", name, status < 0 ? "failed" : status, before, host.delay);
+            } else {
+                host.latency = host.latency < 0 ? latency : host.latency + LATENCY_WEIGHT * (latency - host.latency);
+                host.delay = clamp(host.delay + Math.round((host.latency - host.delay) / 4));
+                if(host.delay != before) {
+                    logger.debug("{}: latency {} ms, delay {} -> {} ms", name, Math.round(host.latency), before, host.delay);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Retry-After in ms, from delta-seconds or an HTTP date; 0 if missing or unreadable.
+     */
+    static long retryAfter(String value) {
+        if(value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+        String trimmed = value.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(trimmed)));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(trimmed);
+            return date == null ? 0 : Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
+    public long getDelay(String url) {
+        Host host = hosts.get(hostName(url));
+        return host == null ? initialDelay : host.getDelay();
+    }
+
+    /**
+     * @return each host's state, by host name.
+     */
+    public Map<String, Host> hosts() {
+        return new TreeMap<>(hosts);
+    }
+
+    private Host host(String name) {
+        return hosts.computeIfAbsent(name, n -> new Host(clamp(initialDelay)));
+    }
+
+    private long clamp(long delay) {
+        return Math.max(minDelay, Math.min(maxDelay, delay));
+    }
+
+    private static String hostName(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            if(host != null) {
+                return host.toLowerCase(Locale.ROOT);
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through
+        }
+        return url;
+    }
+}
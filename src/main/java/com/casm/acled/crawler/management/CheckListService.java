@@ -12,6 +12,7 @@ import com.casm.acled.crawler.scraper.dates.DateParser;
 import com.casm.acled.crawler.scraper.dates.DateParsers;
 import com.casm.acled.crawler.scraper.dates.DateTimeService;
 import com.casm.acled.crawler.spring.CrawlService;
+import com.casm.acled.crawler.spring.SharedHttpClient;
 import com.casm.acled.crawler.util.Util;
 import com.casm.acled.dao.entities.*;
 import com.casm.acled.entities.VersionedEntity;
@@ -27,18 +28,18 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.ws.rs.ProcessingException;
-import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.Invocation;
-import javax.ws.rs.client.WebTarget;
-import javax.ws.rs.core.MediaType;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.net.URI;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -90,6 +91,9 @@ public class CheckListService {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private SharedHttpClient sharedHttpClient;
+
 
     private void attemptAllScrapers() {
         dateTimeService.setScrapersPath(Paths.get("allscrapers"));
@@ -137,46 +141,38 @@ public class CheckListService {
         }
     }
 
+    /**
+     * Redirects within the same protocol are followed; one to another protocol (e.g. http to https) is
+     * reported as SOURCE_LINK_REDIRECT and fails the check, so the source's link can be updated.
+     */
     public boolean checkConnection(Source source) {
-        List<String> seedUrls = source.get(Source.SEED_URLS);
-
-        String[] startURLs;
-
-        if(seedUrls != null && !seedUrls.isEmpty()) {
-            startURLs = seedUrls.toArray(new String[]{});
-        } else {
-            startURLs = ((String) source.get(Source.LINK)).split(",");
-        }
-        String url = startURLs[0];
-
-        Client client = ClientBuilder.newClient();
+        String url = startURL(source);
 
         boolean pass = true;
 
-//        if (url==null) {
-//            return false;
-//        }
-
-//        target.property(ClientProperties.FOLLOW_REDIRECTS, Boolean.TRUE);
         try {
+            String current = url;
+            SharedHttpClient.Status status = sharedHttpClient.status(current, false);
+            for(int hop = 0; status.isRedirect() && status.location != null; ++hop) {
+                URI from = URI.create(current);
+                URI to = from.resolve(status.location.trim());
+                if(!from.getScheme().equalsIgnoreCase(to.getScheme())) {
+
+                    reporter.report(Report.of(Event.SOURCE_LINK_REDIRECT).id(source.id()).message(url + " -> " + to));
+                    return false;
+                }
+                if(hop >= SharedHttpClient.MAX_REDIRECTS) {
+                    throw new IOException("more than " + SharedHttpClient.MAX_REDIRECTS + " redirects");
+                }
+                current = to.toString();
+                status = sharedHttpClient.status(current, false);
+            }
+            if(!status.isOk()) {
 
-            WebTarget target = client.target(url);
-
-            Invocation.Builder invocationBuilder = target.request(MediaType.TEXT_HTML);
-
-            invocationBuilder.get(String.class);
-        } catch ( WebApplicationException e) {
-            if(e.getResponse().getStatus() >= 300 && e.getResponse().getStatus() < 400) {
-                String redirect = (String)e.getResponse().getHeaders().getFirst("Location");
-
-                reporter.report(Report.of(Event.SOURCE_LINK_REDIRECT).id(source.id()).message(url + " -> " + redirect));
-            } else {
-
-                reporter.report(Report.of(Event.SOURCE_LINK_INVALID).id(source.id()).message(url + " : " + e.getResponse().getStatus()));
+                reporter.report(Report.of(Event.SOURCE_LINK_INVALID).id(source.id()).message(url + " : " + status.code));
+                pass = false;
             }
-//            logger.warn(url + " : " + e.getMessage());
-            pass = false;
-        } catch ( IllegalArgumentException | ProcessingException e ) {
+        } catch ( IllegalArgumentException | IOException e ) {
 
             reporter.report(Report.of(Event.SOURCE_LINK_INVALID).id(source.id()).message(url + " : " + e.getMessage()));
             pass = false;
@@ -293,19 +289,23 @@ public class CheckListService {
     public CheckList checkSourceStatus2(CrawlArgs args, Source source){
         System.out.println("Checking source: " + source.get(Source.STANDARD_NAME));
 
-        Check connection = Check.bool(() -> checkConnection(source));
-        Check scraperExists = Check.bool(() -> scraperExists(args, source));
-        Check hasExamples = Check.bool(() -> hasExamples(source));
-        Check hasDateFormat = Check.bool(()-> hasDateFormat(source));
+        // each step is timed, see checkSourceList
+        CheckList checks = new CheckList();
+
+        Check connection = checks.time("connection", () -> Check.bool(() -> checkConnection(source)));
+        Check scraperExists = checks.time("scraperExists", () -> Check.bool(() -> scraperExists(args, source)));
+        Check hasExamples = checks.time("hasExamples", () -> Check.bool(() -> hasExamples(source)));
+        Check hasDateFormat = checks.time("hasDateFormat", () -> Check.bool(()-> hasDateFormat(source)));
 
         Check hasSitemaps = Check.notApplicable("off");
         Check hasRecentSitemaps = Check.notApplicable();
         if (source.isFalse(Source.CRAWL_DISABLE_SITEMAPS)) {
             try {
-                List<String> sitemaps = crawlService.getSitemaps(source);
+                List<String> sitemaps = checks.time("hasSiteMaps", () -> crawlService.getSitemaps(source));
                 hasSitemaps = Check.bool(() -> !sitemaps.isEmpty());
                 if (hasSitemaps.isPass()) {
-                    hasRecentSitemaps = Check.bool(() -> !crawlService.recentSitemapURLs(source.get(Source.LINK), sitemaps).isEmpty());
+                    hasRecentSitemaps = checks.time("hasRecentSitemaps",
+                            () -> Check.bool(() -> !crawlService.recentSitemapURLs(source.get(Source.LINK), sitemaps).isEmpty()));
                 }
             } catch (Exception e){
                 hasSitemaps = Check.failed(e.getMessage());
@@ -314,17 +314,31 @@ public class CheckListService {
 
         boolean canScrapeExamples = Check.allPass(hasExamples, connection, scraperExists);
 
-        Check dateParsed = Check.bool(()-> canScrapeExamples && datesParse(args, source));
+        // fetched once, for both the date parsing and the scraped field checks
+        List<Map<String,String>> scraped = canScrapeExamples ?
+                checks.time("exampleFetch", () -> scraperService.checkExampleURLs(args.scrapersDir, source)) :
+                new ArrayList<>();
 
-        List<Map<String,String>> scraped = canScrapeExamples? scraperService.checkExampleURLs(args.scrapersDir, source) : new ArrayList<>();
+        Check dateParsed = checks.time("dateParsed", () -> Check.bool(()-> canScrapeExamples && datesParse(source, scraped)));
 
         Check titleScraped = Check.bool(() -> canScrapeExamples && scraped.stream().noneMatch(doc -> Strings.isNullOrEmpty(doc.get(SCRAPED_TITLE))));
         Check dateScraped = Check.bool(() -> canScrapeExamples && scraped.stream().noneMatch(doc -> Strings.isNullOrEmpty(doc.get(SCRAPED_DATE))));
         Check articleScraped = Check.bool(() -> canScrapeExamples && scraped.stream().noneMatch(doc -> Strings.isNullOrEmpty(doc.get(SCRAPED_ARTICLE))));
 
-        return CheckList.of(connection, scraperExists, hasExamples, hasDateFormat,
+        checks.addAll(Arrays.asList(connection, scraperExists, hasExamples, hasDateFormat,
                             hasSitemaps, hasRecentSitemaps, dateScraped, dateParsed,
-                            titleScraped, articleScraped);
+                            titleScraped, articleScraped));
+        return checks;
+    }
+
+    private boolean datesParse(Source source, List<Map<String,String>> scraped) {
+        List<String> dateExamples = scraped.stream()
+                .filter(doc -> doc.containsKey(ScraperFields.SCRAPED_DATE) &&
+                        !doc.get(ScraperFields.SCRAPED_DATE).isEmpty())
+                .map(doc -> doc.get(ScraperFields.SCRAPED_DATE))
+                .collect(Collectors.toList());
+
+        return dateTimeService.checkExistingPasses(source, s -> dateExamples);
     }
 
     @Deprecated
@@ -453,11 +467,12 @@ public class CheckListService {
 
     }
 
+    private static final String[] CHECK_HEADER = {"Source ID", "connection", "scraperExists", "hasExamples",
+            "hasDateFormat", "hasSiteMaps", "hasRecentSitemaps", "dateScraped", "dateParsed", "titleScraped",
+            "articleScraped", "passed"};
+
     public String checkSourceList(CrawlArgs args) {
-        String [] header = {"Source ID", "connection", "scraperExists", "hasExamples", "hasDateFormat", "hasSiteMaps",
-                "hasRecentSitemaps", "dateScraped", "dateParsed", "titleScraped", "articleScraped", "passed"};
-//        String [] header = {"Source ID", "hasSiteMaps"};
-        String [][] content = new String[][] {header};
+        String [][] content = new String[][] {CHECK_HEADER};
 
         String name = "Source(s)";
         List<Source> sources = new ArrayList<>();
@@ -473,36 +488,26 @@ public class CheckListService {
             throw new RuntimeException("No source list or source specified.");
         }
 
-        boolean anyFailed = false;
+        // rows are printed as each source completes, and tabled in list order at the end
+        AtomicInteger done = new AtomicInteger(0);
+        int total = sources.size();
+        List<CheckList> results = checkSources(args, sources, (source, checks) -> {
+            long millis = checks.timings().values().stream().mapToLong(Long::longValue).sum();
+            System.out.println(String.format("[%d/%d] %s (%.1fs)", done.incrementAndGet(), total,
+                    String.join(" | ", checks.toTableRow(source.get(Source.STANDARD_NAME), true)), millis / 1000.0));
+        });
 
-        for(Source source : sources) {
+        boolean anyFailed = false;
 
-//            checkSource(args, source);
-            // for debugging, use only one source;
-//            if (source.get(Source.STANDARD_NAME).equals("Imagen del Golfo")) {
-//                String [] checkArray = checkSourceStatus(args, source);
-//                if (checkArray.length==0) {
-//                    continue;
-//                }
-//                content = insertRow(content,content.length, checkArray);
-//
-//            }
-//            String [] checkArray = checkSourceStatus(args, source);
-//            if (checkArray.length==0) {
-//                continue;
-//            }
-//            content = insertRow(content,content.length, checkArray);
-
-            CheckList checks = checkSourceStatus2(args, source);
+        for(int i = 0; i < sources.size(); ++i) {
+            CheckList checks = results.get(i);
 
             if (!checks.isPass()){
                 anyFailed = true;
             }
 
-
-            String[] checkArray = checks.toTableRow(source.get(Source.STANDARD_NAME), true);
+            String[] checkArray = checks.toTableRow(sources.get(i).get(Source.STANDARD_NAME), true);
             content = insertRow(content, content.length, checkArray);
-
         }
 
         TableModel model = new ArrayTableModel(content);
@@ -511,6 +516,8 @@ public class CheckListService {
         String table = tableBuilder.build().render(80);
         System.out.println(table);
 
+        System.out.println(timingTable(results));
+
         if (anyFailed && configService.isEmailConfigured()){
 
             emailService.sendHtmlMessage(configService.getEmail(), name + " failing", "<pre>"+table+"</pre>");
@@ -519,7 +526,121 @@ public class CheckListService {
         return table;
     }
 
+    /**
+     * Check the sources on up to crawler.checkParallelism threads. Sources on the same host are checked one
+     * after the other, so a host only ever sees one source's checks at a time.
+     *
+     * @param listener called with each source's checks as they complete, one at a time.
+     * @return the checks, in the order of the sources.
+     */
+    public List<CheckList> checkSources(CrawlArgs args, List<Source> sources, BiConsumer<Source, CheckList> listener) {
+
+        Map<String, List<Integer>> byHost = new LinkedHashMap<>();
+        for(int i = 0; i < sources.size(); ++i) {
+            byHost.computeIfAbsent(host(sources.get(i)), h -> new ArrayList<>()).add(i);
+        }
+        // largest first, so a host with many sources doesn't start last
+        List<List<Integer>> groups = new ArrayList<>(byHost.values());
+        groups.sort(Comparator.comparingInt(g -> -g.size()));
+
+        AtomicInteger n = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(configService.getCheckParallelism(), groups.size())), r -> {
+            Thread thread = new Thread(r, "check-list-" + n.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        CheckList[] results = new CheckList[sources.size()];
+        List<Future<?>> futures = new ArrayList<>();
+        for(List<Integer> group : groups) {
+            futures.add(executor.submit(() -> {
+                for(int i : group) {
+                    Source source = sources.get(i);
+                    CheckList checks;
+                    try {
+                        checks = checkSourceStatus2(args, source);
+                    } catch (RuntimeException e) {
+                        logger.error("checking " + source.get(Source.STANDARD_NAME) + " failed", e);
+                        checks = new CheckList();
+                        for(int c = 2; c < CHECK_HEADER.length; ++c) {
+                            checks.add(Check.failed(e.getMessage()));
+                        }
+                    }
+                    results[i] = checks;
+                    synchronized (listener) {
+                        listener.accept(source, checks);
+                    }
+                }
+            }));
+        }
+        executor.shutdown();
+
+        try {
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            throw new RuntimeException(e.getCause());
+        }
+
+        return Arrays.asList(results);
+    }
 
+    private static String startURL(Source source) {
+        List<String> seedUrls = source.get(Source.SEED_URLS);
+        if(seedUrls != null && !seedUrls.isEmpty()) {
+            return seedUrls.get(0);
+        } else {
+            return ((String) source.get(Source.LINK)).split(",")[0];
+        }
+    }
+
+    private static String host(Source source) {
+        try {
+            String host = URI.create(Util.ensureHTTP(startURL(source).trim(), false)).getHost();
+            if(host != null) {
+                return host.toLowerCase().replaceFirst("^www\\.", "");
+            }
+        } catch (RuntimeException e) {
+            // not a usable link; checked on its own
+        }
+        return "source-" + source.id();
+    }
+
+    /**
+     * Total, mean and max time spent on each step of the checks, slowest first.
+     */
+    public static String timingTable(List<CheckList> results) {
+        Map<String, LongSummaryStatistics> steps = new HashMap<>();
+        for(CheckList checks : results) {
+            for(Map.Entry<String, Long> timing : checks.timings().entrySet()) {
+                steps.computeIfAbsent(timing.getKey(), k -> new LongSummaryStatistics()).accept(timing.getValue());
+            }
+        }
+
+        String [][] content = new String[][] {{"Step", "Sources", "Total s", "Mean ms", "Max ms"}};
+        List<Map.Entry<String, LongSummaryStatistics>> sorted = new ArrayList<>(steps.entrySet());
+        sorted.sort(Comparator.comparingLong(e -> -e.getValue().getSum()));
+        for(Map.Entry<String, LongSummaryStatistics> step : sorted) {
+            LongSummaryStatistics stats = step.getValue();
+            content = insertRow(content, content.length, new String[]{
+                    step.getKey(),
+                    Long.toString(stats.getCount()),
+                    String.format("%.1f", stats.getSum() / 1000.0),
+                    String.format("%.0f", stats.getAverage()),
+                    Long.toString(stats.getMax())
+            });
+        }
+
+        TableBuilder tableBuilder = new TableBuilder(new ArrayTableModel(content));
+        tableBuilder.addFullBorder(BorderStyle.fancy_light);
+        return tableBuilder.build().render(80);
+    }
 
     public void fixSourceLinks(CrawlArgs args) {
         List<Source> sources = new ArrayList<>();
@@ -31,6 +31,34 @@ public class ConfigService {
     private String userAgent = "CASM Tech";
     private int maxDelay = 10;
     private String email;
+    private boolean articleWriteBehind = false;
+    private int articleBatchSize = 100;
+    private long articleFlushInterval = 2000;
+    private int articleQueueCapacity = 1000;
+    private String articleCountQuery = "SELECT count(*) FROM acled_article WHERE data @> jsonb_build_object('SOURCE_ID', ?::int)";
+    private boolean reportBuffered = true;
+    private int reportBatchSize = 200;
+    private long reportFlushInterval = 2000;
+    private int crawlParallelism = 4;
+    private int crawlMaxConnections = 32;
+    private int urlCheckParallelism = 32;
+    private int urlCheckMaxPerHost = 2;
+    private int urlCheckTimeout = 10000;
+    private long discoveryCacheTtl = 192;
+    private boolean rawHtmlStore = true;
+    private String rawHtmlTable = "CREATE TABLE IF NOT EXISTS acled_raw_html (hash char(64) PRIMARY KEY, html bytea NOT NULL)";
+    private String rawHtmlInsertQuery = "INSERT INTO acled_raw_html (hash, html) VALUES (?, ?) ON CONFLICT (hash) DO NOTHING";
+    private String rawHtmlQuery = "SELECT html FROM acled_raw_html WHERE hash = ?";
+    private int rescrapePageSize = 200;
+    private int rescrapeParallelism = Runtime.getRuntime().availableProcessors();
+    private String articlePageQuery = "SELECT id, business_key, data FROM acled_article WHERE data @> jsonb_build_object('SOURCE_ID', ?::int) AND id > ? ORDER BY id LIMIT ?";
+    private String articleUpdateQuery = "UPDATE acled_article SET data = ?::jsonb WHERE id = ?";
+    private int checkParallelism = 8;
+    private int httpMaxConnections = 64;
+    private int httpMaxPerHost = 4;
+    private int httpTimeout = 10000;
+    private long politenessMin = NorconexConfiguration.MIN_DELAY;
+    private long politenessMax = NorconexConfiguration.MAX_DELAY;
 
     // NOTE: we have to define standard getters and setters to get @ConfigurationProperties to work.
 
@@ -71,4 +99,201 @@ public class ConfigService {
     public boolean isEmailConfigured(){
         return !Strings.isNullOrEmpty(email);
     }
+
+    public boolean isArticleWriteBehind() {
+        return articleWriteBehind;
+    }
+    public void setArticleWriteBehind(boolean articleWriteBehind) {
+        this.articleWriteBehind = articleWriteBehind;
+    }
+
+    public int getArticleBatchSize() {
+        return articleBatchSize;
+    }
+    public void setArticleBatchSize(int articleBatchSize) {
+        this.articleBatchSize = articleBatchSize;
+    }
+
+    // milliseconds
+    public long getArticleFlushInterval() {
+        return articleFlushInterval;
+    }
+    public void setArticleFlushInterval(long articleFlushInterval) {
+        this.articleFlushInterval = articleFlushInterval;
+    }
+
+    public int getArticleQueueCapacity() {
+        return articleQueueCapacity;
+    }
+    public void setArticleQueueCapacity(int articleQueueCapacity) {
+        this.articleQueueCapacity = articleQueueCapacity;
+    }
+
+    public String getArticleCountQuery() {
+        return articleCountQuery;
+    }
+    public void setArticleCountQuery(String articleCountQuery) {
+        this.articleCountQuery = articleCountQuery;
+    }
+
+    public boolean isReportBuffered() {
+        return reportBuffered;
+    }
+    public void setReportBuffered(boolean reportBuffered) {
+        this.reportBuffered = reportBuffered;
+    }
+
+    public int getReportBatchSize() {
+        return reportBatchSize;
+    }
+    public void setReportBatchSize(int reportBatchSize) {
+        this.reportBatchSize = reportBatchSize;
+    }
+
+    public long getReportFlushInterval() {
+        return reportFlushInterval;
+    }
+    public void setReportFlushInterval(long reportFlushInterval) {
+        this.reportFlushInterval = reportFlushInterval;
+    }
+
+    public int getCrawlParallelism() {
+        return crawlParallelism;
+    }
+    public void setCrawlParallelism(int crawlParallelism) {
+        this.crawlParallelism = crawlParallelism;
+    }
+
+    public int getCrawlMaxConnections() {
+        return crawlMaxConnections;
+    }
+    public void setCrawlMaxConnections(int crawlMaxConnections) {
+        this.crawlMaxConnections = crawlMaxConnections;
+    }
+
+    public int getUrlCheckParallelism() {
+        return urlCheckParallelism;
+    }
+    public void setUrlCheckParallelism(int urlCheckParallelism) {
+        this.urlCheckParallelism = urlCheckParallelism;
+    }
+
+    public int getUrlCheckMaxPerHost() {
+        return urlCheckMaxPerHost;
+    }
+    public void setUrlCheckMaxPerHost(int urlCheckMaxPerHost) {
+        this.urlCheckMaxPerHost = urlCheckMaxPerHost;
+    }
+
+    public int getUrlCheckTimeout() {
+        return urlCheckTimeout;
+    }
+    public void setUrlCheckTimeout(int urlCheckTimeout) {
+        this.urlCheckTimeout = urlCheckTimeout;
+    }
+
+    public long getDiscoveryCacheTtl() {
+        return discoveryCacheTtl;
+    }
+    public void setDiscoveryCacheTtl(long discoveryCacheTtl) {
+        this.discoveryCacheTtl = discoveryCacheTtl;
+    }
+
+    public boolean isRawHtmlStore() {
+        return rawHtmlStore;
+    }
+    public void setRawHtmlStore(boolean rawHtmlStore) {
+        this.rawHtmlStore = rawHtmlStore;
+    }
+
+    public String getRawHtmlTable() {
+        return rawHtmlTable;
+    }
+    public void setRawHtmlTable(String rawHtmlTable) {
+        this.rawHtmlTable = rawHtmlTable;
+    }
+
+    public String getRawHtmlInsertQuery() {
+        return rawHtmlInsertQuery;
+    }
+    public void setRawHtmlInsertQuery(String rawHtmlInsertQuery) {
+        this.rawHtmlInsertQuery = rawHtmlInsertQuery;
+    }
+
+    public String getRawHtmlQuery() {
+        return rawHtmlQuery;
+    }
+    public void setRawHtmlQuery(String rawHtmlQuery) {
+        this.rawHtmlQuery = rawHtmlQuery;
+    }
+
+    public int getRescrapePageSize() {
+        return rescrapePageSize;
+    }
+    public void setRescrapePageSize(int rescrapePageSize) {
+        this.rescrapePageSize = rescrapePageSize;
+    }
+
+    public int getRescrapeParallelism() {
+        return rescrapeParallelism;
+    }
+    public void setRescrapeParallelism(int rescrapeParallelism) {
+        this.rescrapeParallelism = rescrapeParallelism;
+    }
+
+    public String getArticlePageQuery() {
+        return articlePageQuery;
+    }
+    public void setArticlePageQuery(String articlePageQuery) {
+        this.articlePageQuery = articlePageQuery;
+    }
+
+    public String getArticleUpdateQuery() {
+        return articleUpdateQuery;
+    }
+    public void setArticleUpdateQuery(String articleUpdateQuery) {
+        this.articleUpdateQuery = articleUpdateQuery;
+    }
+
+    public int getCheckParallelism() {
+        return checkParallelism;
+    }
+    public void setCheckParallelism(int checkParallelism) {
+        this.checkParallelism = checkParallelism;
+    }
+
+    public int getHttpMaxConnections() {
+        return httpMaxConnections;
+    }
+    public void setHttpMaxConnections(int httpMaxConnections) {
+        this.httpMaxConnections = httpMaxConnections;
+    }
+
+    public int getHttpMaxPerHost() {
+        return httpMaxPerHost;
+    }
+    public void setHttpMaxPerHost(int httpMaxPerHost) {
+        this.httpMaxPerHost = httpMaxPerHost;
+    }
+
+    public int getHttpTimeout() {
+        return httpTimeout;
+    }
+    public void setHttpTimeout(int httpTimeout) {
+        this.httpTimeout = httpTimeout;
+    }
+
+    public long getPolitenessMin() {
+        return politenessMin;
+    }
+    public void setPolitenessMin(long politenessMin) {
+        this.politenessMin = politenessMin;
+    }
+
+    public long getPolitenessMax() {
+        return politenessMax;
+    }
+    public void setPolitenessMax(long politenessMax) {
+        this.politenessMax = politenessMax;
+    }
 }
@@ -22,6 +22,10 @@ public class CrawlArgs {
 
     public static class Flags {
         public static final String DISABLE_ON_FAIL = "DISABLE_ON_FAIL";
+        // Store matched keyword offsets during the crawl and build highlights later
+        public static final String LAZY_HIGHLIGHTS = "LAZY_HIGHLIGHTS";
+        // Crawl every child sitemap, ignoring (but still advancing) the source's sitemap watermark
+        public static final String FULL_SITEMAPS = "FULL_SITEMAPS";
     }
 
     private final SourceDAO sourceDAO;
@@ -118,6 +122,10 @@ public class CrawlArgs {
     public Integer politeness;
     public static final String POLITENESS = "POLITENESS";
 
+    // bounds on the adaptive politeness delay in ms, from crawler.politenessMin/Max; null for the defaults
+    public Long politenessMin;
+    public Long politenessMax;
+
     public Boolean ignoreSiteMap;
     public static final String IGNORE_SITE_MAP = "IGNORE_SITE_MAP";
 
@@ -234,6 +242,43 @@ public class CrawlArgs {
 
     }
 
+    /**
+     * A copy of these (initialised) args for crawling one source. Crawls modify their args, so each
+     * source crawled in parallel needs its own. If no source lists were given, the source's own are used.
+     * A crawl id given for the whole run gets the source id appended.
+     */
+    public CrawlArgs forSource(Source source) {
+        CrawlArgs copy = new CrawlArgs(sourceDAO, sourceListDAO);
+        copy.raw = raw;
+        copy.program = program;
+        copy.jqmProgram = jqmProgram;
+        copy.source = source;
+        if((raw == null || raw.sourceLists == null) && sourceListDAO != null) {
+            copy.sourceLists = sourceListDAO.bySource(source);
+        } else {
+            copy.sourceLists = sourceLists;
+        }
+        copy.path = path;
+        copy.name = name;
+        // the crawl id names the collector and its working files, so it can't be shared between sources
+        copy.crawlId = crawlId == null || crawlId.isEmpty() ? crawlId : crawlId + "-" + source.id();
+        copy.maxArticle = maxArticle;
+        copy.depth = depth;
+        copy.politeness = politeness;
+        copy.politenessMin = politenessMin;
+        copy.politenessMax = politenessMax;
+        copy.ignoreSiteMap = ignoreSiteMap;
+        copy.crawlOffDomain = crawlOffDomain;
+        copy.skipKeywords = skipKeywords;
+        copy.from = from;
+        copy.to = to;
+        copy.workingDir = workingDir;
+        copy.scrapersDir = scrapersDir;
+        copy.flags = flags;
+        copy.flagSet = flagSet;
+        return copy;
+    }
+
     // added to allow access these data;
     public SourceDAO getSourceDAO() {
         return this.sourceDAO;
@@ -1,6 +1,7 @@
 package com.casm.acled.crawler.management;
 
 import com.casm.acled.crawler.reporting.Reporter;
+import com.casm.acled.crawler.scraper.keywords.KeywordsService;
 import com.casm.acled.crawler.spring.CrawlService;
 import com.casm.acled.crawler.util.Util;
 import com.casm.acled.dao.entities.ArticleDAO;
@@ -62,6 +63,9 @@ public class DataOperationService {
     @Autowired
     private ArticleDAO articleDAO;
 
+    @Autowired
+    private KeywordsService keywordsService;
+
     public void copy(CrawlArgs crawlArgs) {
 
         boolean suffix = crawlArgs.flagSet.contains("S");
@@ -537,6 +541,9 @@ public class DataOperationService {
             Object value;
             if(column.equals(Source.STANDARD_NAME)) {
                 value = sourceDAO.getById(article.get(Article.SOURCE_ID)).get().get(Source.STANDARD_NAME);
+            } else if(column.equals(Article.SCRAPE_KEYWORD_HIGHLIGHT)) {
+                // built from the recorded offsets if the crawl was run with LAZY_HIGHLIGHTS
+                value = keywordsService.getHighlights(article);
             } else {
                 value = article.get(column);
             }
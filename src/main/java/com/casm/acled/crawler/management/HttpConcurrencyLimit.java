@@ -0,0 +1,52 @@
+package com.casm.acled.crawler.management;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Process-wide cap on the number of HTTP fetches in flight, shared by every crawl running in this JVM.
+ *
+ * Each crawl has its own Norconex threads and politeness delays, so with several sources crawling at once
+ * the total request rate is only bounded by how many are running. The limit is applied around the fetch
+ * itself (see LimitedDocumentFetcher), not the politeness delay, so waiting crawls don't hold permits.
+ */
+public final class HttpConcurrencyLimit {
+
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private static volatile Semaphore permits = new Semaphore(UNLIMITED);
+    private static volatile int limit = UNLIMITED;
+
+    private HttpConcurrencyLimit() {}
+
+    /**
+     * Takes effect for fetches started after the call; those already in flight finish under the old limit.
+     */
+    public static synchronized void setLimit(int limit) {
+        if(limit < 1) {
+            limit = UNLIMITED;
+        }
+        if(limit != HttpConcurrencyLimit.limit) {
+            HttpConcurrencyLimit.limit = limit;
+            permits = new Semaphore(limit, true);
+        }
+    }
+
+    public static int getLimit() {
+        return limit;
+    }
+
+    public static int inFlight() {
+        return limit - permits.availablePermits();
+    }
+
+    public static <T> T call(Callable<T> fetch) throws Exception {
+        Semaphore permits = HttpConcurrencyLimit.permits;
+        permits.acquire();
+        try {
+            return fetch.call();
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.casm.acled.crawler.management;
+
+import com.norconex.collector.http.doc.HttpDocument;
+import com.norconex.collector.http.fetch.HttpFetchResponse;
+import com.norconex.collector.http.fetch.IHttpDocumentFetcher;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+
+/**
+ * Document fetcher that holds an HttpConcurrencyLimit permit for the duration of each fetch, and reports
+ * how each fetch went to the crawl's AdaptiveDelayResolver, if it has one.
+ */
+public class LimitedDocumentFetcher implements IHttpDocumentFetcher {
+
+    private final IHttpDocumentFetcher delegate;
+    private final AdaptiveDelayResolver delays;
+
+    public LimitedDocumentFetcher(IHttpDocumentFetcher delegate) {
+        this(delegate, null);
+    }
+
+    public LimitedDocumentFetcher(IHttpDocumentFetcher delegate, AdaptiveDelayResolver delays) {
+        this.delegate = delegate;
+        this.delays = delays;
+    }
+
+    @Override
+    public HttpFetchResponse fetchDocument(HttpClient httpClient, HttpDocument doc) {
+        try {
+            return HttpConcurrencyLimit.call(() -> observed(httpClient, doc));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private HttpFetchResponse observed(HttpClient httpClient, HttpDocument doc) {
+        if(delays == null) {
+            return delegate.fetchDocument(httpClient, doc);
+        }
+        long start = System.currentTimeMillis();
+        RetryAfterClient client = new RetryAfterClient(httpClient);
+        HttpFetchResponse response = null;
+        try {
+            response = delegate.fetchDocument(client, doc);
+            return response;
+        } finally {
+            delays.observe(doc.getReference(), response == null ? -1 : response.getStatusCode(),
+                    System.currentTimeMillis() - start, client.retryAfter);
+        }
+    }
+
+    /**
+     * Passes everything through to the crawler's client, keeping the Retry-After header of the last response.
+     * The fetcher only copies response headers into the document's metadata for a 2xx, so that's no use for
+     * a 429 or 503.
+     */
+    private static class RetryAfterClient implements HttpClient {
+
+        private final HttpClient client;
+        private String retryAfter;
+
+        private RetryAfterClient(HttpClient client) {
+            this.client = client;
+        }
+
+        private HttpResponse seen(HttpResponse response) {
+            Header header = response == null ? null : response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+            retryAfter = header == null ? null : header.getValue();
+            return response;
+        }
+
+        private <T> ResponseHandler<T> seen(ResponseHandler<? extends T> handler) {
+            return response -> handler.handleResponse(seen(response));
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public HttpParams getParams() {
+            return client.getParams();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public ClientConnectionManager getConnectionManager() {
+            return client.getConnectionManager();
+        }
+
+        @Override
+        public HttpResponse execute(HttpUriRequest request) throws IOException {
+            return seen(client.execute(request));
+        }
+
+        @Override
+        public HttpResponse execute(HttpUriRequest request, HttpContext context) throws IOException {
+            return seen(client.execute(request, context));
+        }
+
+        @Override
+        public HttpResponse execute(HttpHost target, HttpRequest request) throws IOException {
+            return seen(client.execute(target, request));
+        }
+
+        @Override
+        public HttpResponse execute(HttpHost target, HttpRequest request, HttpContext context) throws IOException {
+            return seen(client.execute(target, request, context));
+        }
+
+        @Override
+        public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> handler) throws IOException {
+            return client.execute(request, seen(handler));
+        }
+
+        @Override
+        public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> handler, HttpContext context) throws IOException {
+            return client.execute(request, seen(handler), context);
+        }
+
+        @Override
+        public <T> T execute(HttpHost target, HttpRequest request, ResponseHandler<? extends T> handler) throws IOException {
+            return client.execute(target, request, seen(handler));
+        }
+
+        @Override
+        public <T> T execute(HttpHost target, HttpRequest request, ResponseHandler<? extends T> handler, HttpContext context) throws IOException {
+            return client.execute(target, request, seen(handler), context);
+        }
+    }
+
+    public IHttpDocumentFetcher getDelegate() {
+        return delegate;
+    }
+}
@@ -11,7 +11,6 @@ import com.norconex.collector.core.filter.impl.RegexReferenceFilter;
 import com.norconex.collector.http.HttpCollectorConfig;
 import com.norconex.collector.http.crawler.HttpCrawlerConfig;
 import com.norconex.collector.http.crawler.URLCrawlScopeStrategy;
-import com.norconex.collector.http.delay.impl.GenericDelayResolver;
 import com.norconex.collector.http.fetch.impl.GenericDocumentFetcher;
 import com.norconex.collector.http.sitemap.impl.StandardSitemapResolverFactory;
 import com.norconex.collector.http.url.impl.GenericLinkExtractor;
@@ -49,10 +48,14 @@ public class NorconexConfiguration {
     private int depth = 5;
     private String urlRegex ;
     private long politeness = 100;
+    private AdaptiveDelayResolver delayResolver;
     private List<String> regexFilterPatterns;
 //    private ZonedDateTime from;
 //    private ZonedDateTime to;
 
+    public static final long MIN_DELAY = 50;
+    public static final long MAX_DELAY = 10000;
+
     private static String PROGRESS = "progress";
     private static String LOGS = "logs";
 
@@ -177,16 +180,17 @@ public class NorconexConfiguration {
 
         crawler.setSitemapResolverFactory(ssrf);
 
+        // Used to set the politeness delay for consecutive post calls to the site (helps prevent being blocked),
+        // adapted per host from how the fetches go
+        delayResolver = new AdaptiveDelayResolver(politeness,
+                args.politenessMin != null ? args.politenessMin : MIN_DELAY, // the minimum avoids too small a delay
+                args.politenessMax != null ? args.politenessMax : MAX_DELAY);
+        delayResolver.setIgnoreRobotsCrawlDelay(ignoreRobots);
+        crawler.setDelayResolver(delayResolver);
+
         GenericDocumentFetcher documentFetcher = new GenericDocumentFetcher();
         documentFetcher.setDetectCharset(true);
-        crawler.setDocumentFetcher(documentFetcher);
-
-        // Used to set the politeness delay for consecutive post calls to the site (helps prevent being blocked)
-        GenericDelayResolver gdr = new GenericDelayResolver();
-        gdr.setDefaultDelay((politeness <= 50) ? 50 : politeness); // safety check to avoid to to small a delay
-        gdr.setIgnoreRobotsCrawlDelay(ignoreRobots);
-        gdr.setScope(GenericDelayResolver.SCOPE_SITE);
-        crawler.setDelayResolver(gdr);
+        crawler.setDocumentFetcher(new LimitedDocumentFetcher(documentFetcher, delayResolver));
 
         GenericLinkExtractor gle = new GenericLinkExtractor();
         gle.setIgnoreNofollow(ignoreRobots);
@@ -237,6 +241,10 @@ public class NorconexConfiguration {
         crawler.setPreImportProcessors(scraper, metadata);
     }
 
+    public AdaptiveDelayResolver delayResolver() {
+        return delayResolver;
+    }
+
     public long getPoliteness() {
         return politeness;
     }
@@ -5,7 +5,10 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -13,6 +16,8 @@ import java.util.stream.Collectors;
  */
 public class CheckList extends ArrayList<Check> {
 
+    private final Map<String, Long> timings = new LinkedHashMap<>();
+
     public CheckList(){}
 
     public CheckList(@NotNull Collection<? extends Check> c) {
@@ -49,6 +54,25 @@ public class CheckList extends ArrayList<Check> {
         return row.toArray(new String[0]);
     }
 
+    /**
+     * Milliseconds spent on each named step of producing these checks.
+     */
+    public Map<String, Long> timings(){
+        return timings;
+    }
+
+    /**
+     * Run a step, adding the time it takes to the named timing.
+     */
+    public <T> T time(String name, Supplier<T> step){
+        long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            timings.merge(name, (System.nanoTime() - start) / 1000000, Long::sum);
+        }
+    }
+
     public static CheckList of(Check... checks){
         return new CheckList(Arrays.asList(checks));
     }
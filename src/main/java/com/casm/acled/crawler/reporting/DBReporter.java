@@ -1,49 +1,312 @@
 package com.casm.acled.crawler.reporting;
 
+import com.casm.acled.crawler.management.ConfigService;
 import com.casm.acled.dao.entities.CrawlReportDAO;
+import com.casm.acled.dao.sql.Jsonb;
+import com.casm.acled.dao.sql.Where;
+import com.casm.acled.dao.sql.WhereValue;
 import com.casm.acled.entities.crawlreport.CrawlReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+/**
+ * Writes reports to the crawl_report table.
+ *
+ * When crawler.reportBuffered is set, reports are put on a lock-free queue and written in batches
+ * through CrawlReportDAO.create(Collection) by a background thread, once crawler.reportBatchSize have
+ * accumulated or every crawler.reportFlushInterval milliseconds. The buffer is also flushed before
+ * reports are read back, at the end of each crawl (see flush()), on context shutdown and on JVM exit.
+ *
+ * Every report is also counted in EventCounters, and flush(id) at the end of a source's crawl writes that
+ * source's counts as RUN_SUMMARY rows so ReportQueryService can summarise a run without loading all of its
+ * reports. There is one summary row per (runId, source, reporterType): counts flushed later are added to it.
+ */
 @Component
 @Primary
 public class DBReporter implements Reporter {
 
+    protected static final Logger logger = LoggerFactory.getLogger(DBReporter.class);
+
     private final List<Report> reports;
 
     @Autowired
     private CrawlReportDAO crawlReportDAO;
 
+    @Autowired(required = false)
+    private ConfigService configService;
+
     private String runId;
 
+    private final EventCounters counters;
+
+    private final Queue<Report> buffer;
+    private final AtomicInteger buffered;
+    private final AtomicBoolean flushScheduled;
+    private final Object flushLock;
+    private final Object summaryLock;
+    private int batchSize;
+    // null when unbuffered, e.g. outside Spring, where every report is written as it arrives
+    private volatile ScheduledExecutorService flusher;
+
     public DBReporter() {
         reports = new ArrayList<>();
+        counters = new EventCounters();
+        buffer = new ConcurrentLinkedQueue<>();
+        buffered = new AtomicInteger(0);
+        flushScheduled = new AtomicBoolean(false);
+        flushLock = new Object();
+        summaryLock = new Object();
+    }
+
+    @PostConstruct
+    public void init() {
+        if(configService == null || !configService.isReportBuffered()) {
+            return;
+        }
+        batchSize = Math.max(1, configService.getReportBatchSize());
+        long interval = Math.max(1, configService.getReportFlushInterval());
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "report-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushBufferQuietly, interval, interval, TimeUnit.MILLISECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushQuietly, "report-flusher-shutdown"));
+    }
+
+    @PreDestroy
+    public void close() {
+        ScheduledExecutorService flusher = this.flusher;
+        this.flusher = null;
+        if(flusher != null) {
+            flusher.shutdown();
+        }
+        flush();
     }
 
     public DBReporter report(Report report) {
         report = assignRunId(report);
-        crawlReportDAO.create(report.toCrawlReport());
+        counters.count(report);
+        if(flusher == null) {
+            crawlReportDAO.create(report.toCrawlReport());
+        } else {
+            buffer.add(report);
+            added(1);
+        }
         return this;
     }
 
     public DBReporter report(Collection<Report> reports) {
-        crawlReportDAO.create(reports.stream().map(this::assignRunId).map(Report::toCrawlReport).collect(Collectors.toList()));
+        List<Report> assigned = new ArrayList<>(reports.size());
+        for(Report report : reports) {
+            report = assignRunId(report);
+            counters.count(report);
+            assigned.add(report);
+        }
+        if(flusher == null) {
+            crawlReportDAO.create(assigned.stream().map(Report::toCrawlReport).collect(Collectors.toList()));
+        } else {
+            buffer.addAll(assigned);
+            added(assigned.size());
+        }
         return this;
     }
 
+    private void added(int n) {
+        ScheduledExecutorService flusher = this.flusher;
+        if(buffered.addAndGet(n) >= batchSize && flusher != null && flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushScheduled.set(false);
+                    flushBufferQuietly();
+                });
+            } catch (RuntimeException e) {
+                // shut down between the check and the submit; write from this thread instead
+                flushScheduled.set(false);
+                flushBuffer();
+            }
+        }
+    }
+
+    /**
+     * Write out all buffered reports, then add the event counts accumulated since the last flush to the
+     * summary rows.
+     */
+    @Override
+    public DBReporter flush() {
+        flushBuffer();
+        summarise(counters.drain());
+        return this;
+    }
+
+    /**
+     * As flush(), but only the counts for the reports about id, so other sources still crawling keep theirs
+     * until they finish.
+     */
+    @Override
+    public DBReporter flush(Integer id) {
+        flushBuffer();
+        summarise(counters.drain(id));
+        return this;
+    }
+
+    private void summarise(List<Report> summaries) {
+        if(summaries.isEmpty()) {
+            return;
+        }
+        // one flush at a time, so two can't both add to the same stored summary
+        synchronized (summaryLock) {
+            List<Report> created = new ArrayList<>();
+            for(Report summary : summaries) {
+                Optional<CrawlReport> stored = storedSummary(summary);
+                if(stored.isPresent()) {
+                    Report merged = EventCounters.merge(Report.of(stored.get()), summary);
+                    crawlReportDAO.upsert(stored.get().put(CrawlReport.MESSAGE, merged.message()));
+                } else {
+                    created.add(summary);
+                }
+            }
+            if(!created.isEmpty()) {
+                write(created);
+            }
+        }
+    }
+
+    /**
+     * The summary row already written for the same (runId, id, type, reporterType), if any. Summaries without
+     * an id or a type of a known class can't be looked up by source, so they're matched among the run's
+     * RUN_SUMMARY rows instead.
+     */
+    private Optional<CrawlReport> storedSummary(Report summary) {
+        String reporterType = EventCounters.reporterType(summary);
+
+        Class<?> type = null;
+        if(summary.id() != null && summary.type() != null) {
+            try {
+                type = Class.forName(summary.type());
+            } catch (ClassNotFoundException e) {
+                // matched on its name below
+            }
+        }
+
+        if(type != null) {
+            return crawlReportDAO.byRunIdAndCrawlSource(summary.runId(), summary.id(), type, EventCounters.class).stream()
+                    .filter(cr -> Objects.equals(reporterType, EventCounters.reporterType(Report.of(cr))))
+                    .findFirst();
+        }
+
+        return crawlReportDAO.query(Where.and(
+                WhereValue.equal(Jsonb.string(CrawlReport.RUN_ID), summary.runId()),
+                WhereValue.equal(Jsonb.string(CrawlReport.EVENT), Event.RUN_SUMMARY.name())
+        )).stream()
+                .filter(cr -> {
+                    Report stored = Report.of(cr);
+                    return Objects.equals(summary.id(), stored.id())
+                            && Objects.equals(summary.type(), stored.type())
+                            && Objects.equals(reporterType, EventCounters.reporterType(stored));
+                })
+                .findFirst();
+    }
+
+    /**
+     * Write out all buffered reports, in batches of at most crawler.reportBatchSize.
+     */
+    private void flushBuffer() {
+        synchronized (flushLock) {
+            List<Report> batch = new ArrayList<>();
+            Report report;
+            while((report = buffer.poll()) != null) {
+                batch.add(report);
+                if(batch.size() >= Math.max(1, batchSize)) {
+                    writeBuffered(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            if(!batch.isEmpty()) {
+                writeBuffered(batch);
+            }
+        }
+    }
+
+    private void flushBufferQuietly() {
+        try {
+            flushBuffer();
+        } catch (RuntimeException e) {
+            logger.error("failed to flush reports", e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("failed to flush reports", e);
+        }
+    }
+
+    private void writeBuffered(List<Report> batch) {
+        try {
+            write(batch);
+        } finally {
+            buffered.addAndGet(-batch.size());
+        }
+    }
+
+    private void write(List<Report> batch) {
+        try {
+            crawlReportDAO.create(batch.stream().map(Report::toCrawlReport).collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+            // Don't lose the whole batch to one bad row - fall back to writing them one by one.
+            logger.warn("batch write of {} reports failed, retrying individually: {}", batch.size(), e.getMessage());
+            for(Report report : batch) {
+                try {
+                    crawlReportDAO.create(report.toCrawlReport());
+                } catch (RuntimeException ex) {
+                    logger.error("failed to write report " + report, ex);
+                }
+            }
+        }
+    }
+
+    public int pending() {
+        return buffered.get();
+    }
+
+    /**
+     * The run's reports, without the RUN_SUMMARY rows counting them.
+     */
     @Override
     public List<Report> getRunReports(String runId) {
-        return crawlReportDAO.getBy(CrawlReport.RUN_ID, runId).stream().map(Report::of).collect(Collectors.toList());
+        flushBuffer();
+        return crawlReportDAO.getBy(CrawlReport.RUN_ID, runId).stream()
+                .map(Report::of)
+                .filter(r -> !Event.RUN_SUMMARY.name().equals(r.event()))
+                .collect(Collectors.toList());
     }
 
     private static DBReporter reporter;
@@ -56,6 +319,7 @@ public class DBReporter implements Reporter {
     }
 
     public List<Report> reports() {
+        flushBuffer();
         return crawlReportDAO.getAll().stream().map(Report::of).collect(Collectors.toList());
     }
 
@@ -12,6 +12,14 @@ public enum Event {
     // When a date text was found, but was not able to be parsed into ScraperFields.STANDARD_DATE
     DATE_PARSE_FAILED,
     DATE_ALL_PARSE_SUCCESS,
+    // Which of a source's date specs parsed its example dates, and how often
+    DATE_SPEC_USAGE,
+    // Cache hits, misses and request latency of the natural language date parsing service during a crawl
+    DATE_SERVICE_USAGE,
+    // Each host's politeness delay at the end of a crawl, with its latency, time waited and backoffs
+    POLITENESS_DELAY,
+    // Per-event counts for a run, written by EventCounters instead of being counted from the raw reports
+    RUN_SUMMARY,
     DATE_NOT_FOUND,
     // A successfully parsed date falls within the required period
     DATE_MATCH,
@@ -38,6 +46,8 @@ public enum Event {
     SCRAPE_FAIL,
     SCRAPE_TIMEOUT,
     SCRAPE_ERROR,
+    // Articles done, changed and throughput so far, after each page of a rescrape
+    RESCRAPE_PROGRESS,
     // A successfully scraped article text contains the necessary keywords to be considered a match
     QUERY_MATCH,
     // A successfully scraped article text does not contain the necessary keywords to be considered a match
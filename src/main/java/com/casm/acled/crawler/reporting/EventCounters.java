@@ -0,0 +1,212 @@
+package com.casm.acled.crawler.reporting;
+
+import com.casm.acled.crawler.reporting.ReportQueryService.EventCountSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * In-memory event counts per (runId, id, type, reporterType), kept alongside the row-per-event reports
+ * so a run can be summarised without loading every one of its reports.
+ *
+ * Counts are long arrays indexed by Event.ordinal(). drain() turns them into summary reports, one per key,
+ * with event RUN_SUMMARY and reporterType EventCounters; the original reporterType and the non-zero counts
+ * are encoded in the message. Each drain only holds the counts since the last one, so a stored summary is
+ * kept up to date by adding later drains to it (see merge()).
+ */
+public class EventCounters {
+
+    private static final String REPORTER_TYPE = "reporterType";
+    private static final Event[] EVENTS = Event.values();
+
+    private static final class Key {
+        private final String runId;
+        private final Integer id;
+        private final String type;
+        private final String reporterType;
+
+        private Key(String runId, Integer id, String type, String reporterType) {
+            this.runId = runId;
+            this.id = id;
+            this.type = type;
+            this.reporterType = reporterType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(runId, key.runId) &&
+                    Objects.equals(id, key.id) &&
+                    Objects.equals(type, key.type) &&
+                    Objects.equals(reporterType, key.reporterType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(runId, id, type, reporterType);
+        }
+    }
+
+    private final Map<Key, long[]> counts;
+
+    public EventCounters() {
+        counts = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Count a report that has already had its run id assigned. Reports without a recognised event are ignored.
+     */
+    public void count(Report report) {
+        Event event = event(report.event());
+        if(event == null || event == Event.RUN_SUMMARY) {
+            return;
+        }
+        Key key = new Key(report.runId(), report.id(), report.type(), report.reporterType());
+        long[] eventCounts = counts.computeIfAbsent(key, k -> new long[EVENTS.length]);
+        synchronized (eventCounts) {
+            ++eventCounts[event.ordinal()];
+        }
+    }
+
+    public long get(String runId, Integer id, String type, String reporterType, Event event) {
+        long[] eventCounts = counts.get(new Key(runId, id, type, reporterType));
+        if(eventCounts == null) {
+            return 0;
+        }
+        synchronized (eventCounts) {
+            return eventCounts[event.ordinal()];
+        }
+    }
+
+    /**
+     * Summary reports for everything counted since the last drain, resetting the counts.
+     */
+    public List<Report> drain() {
+        return drain(key -> true);
+    }
+
+    /**
+     * As drain(), but only for the reports about one source (or other entity), leaving other runs' counts
+     * to their own crawls.
+     */
+    public List<Report> drain(Integer id) {
+        return drain(key -> Objects.equals(key.id, id));
+    }
+
+    private List<Report> drain(Predicate<Key> which) {
+        List<Report> summaries = new ArrayList<>();
+        for(Map.Entry<Key, long[]> entry : counts.entrySet()) {
+            if(!which.test(entry.getKey())) {
+                continue;
+            }
+            long[] eventCounts = entry.getValue();
+            long[] snapshot;
+            synchronized (eventCounts) {
+                snapshot = eventCounts.clone();
+                Arrays.fill(eventCounts, 0);
+            }
+
+            String message = encode(entry.getKey().reporterType, snapshot);
+            if(message == null) {
+                continue;
+            }
+
+            Key key = entry.getKey();
+            Report summary = Report.of(Event.RUN_SUMMARY, key.id)
+                    .reporterType(EventCounters.class)
+                    .runId(key.runId)
+                    .message(message);
+            if(key.type != null) {
+                summary = summary.type(key.type);
+            }
+            summaries.add(summary);
+        }
+        return summaries;
+    }
+
+    // "reporterType=<class>;EVENT=n;EVENT=n", or null if nothing was counted
+    static String encode(String reporterType, long[] eventCounts) {
+        StringBuilder sb = new StringBuilder(REPORTER_TYPE).append('=').append(reporterType == null ? "" : reporterType);
+        boolean any = false;
+        for(int i = 0; i < eventCounts.length; ++i) {
+            if(eventCounts[i] > 0) {
+                sb.append(';').append(EVENTS[i].name()).append('=').append(eventCounts[i]);
+                any = true;
+            }
+        }
+        return any ? sb.toString() : null;
+    }
+
+    /**
+     * A summary holding the counts of both; the stored one's reporterType is kept.
+     */
+    public static Report merge(Report stored, Report drained) {
+        long[] eventCounts = new long[EVENTS.length];
+        add(eventCounts, stored);
+        add(eventCounts, drained);
+        String message = encode(reporterType(stored), eventCounts);
+        return message == null ? stored : stored.message(message);
+    }
+
+    /**
+     * The reporterType a summary report's counts were recorded under.
+     */
+    public static String reporterType(Report summary) {
+        String message = summary.message();
+        if(message == null || !message.startsWith(REPORTER_TYPE + "=")) {
+            return null;
+        }
+        int end = message.indexOf(';');
+        String reporterType = message.substring(REPORTER_TYPE.length() + 1, end < 0 ? message.length() : end);
+        return reporterType.isEmpty() ? null : reporterType;
+    }
+
+    /**
+     * Add a summary report's counts to an EventCountSummary.
+     */
+    public static EventCountSummary addTo(EventCountSummary summary, Report report) {
+        long[] eventCounts = new long[EVENTS.length];
+        add(eventCounts, report);
+        for(int i = 0; i < eventCounts.length; ++i) {
+            if(eventCounts[i] > 0) {
+                summary.incCount(EVENTS[i], (int) eventCounts[i]);
+            }
+        }
+        return summary;
+    }
+
+    private static void add(long[] eventCounts, Report report) {
+        String message = report.message();
+        if(message == null) {
+            return;
+        }
+        for(String part : message.split(";")) {
+            int eq = part.indexOf('=');
+            if(eq < 0 || part.startsWith(REPORTER_TYPE + "=")) {
+                continue;
+            }
+            Event event = event(part.substring(0, eq));
+            if(event != null) {
+                eventCounts[event.ordinal()] += Long.parseLong(part.substring(eq + 1));
+            }
+        }
+    }
+
+    private static Event event(String name) {
+        if(name == null) {
+            return null;
+        }
+        try {
+            return Event.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,31 +1,93 @@
 package com.casm.acled.crawler.reporting;
 
-import com.casm.acled.dao.entities.CrawlReportDAO;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Keeps the most recent reports in memory, e.g. for dry runs and checks that don't need them stored.
+ *
+ * Reports go into a fixed-capacity ring buffer that any number of threads can write to; once it is full
+ * the oldest reports are overwritten, so memory stays bounded however long the run. Reports are indexed
+ * by run id for getRunReports, and every report is counted by event, including those since overwritten.
+ */
 @Component
 public class InMemoryReporter implements Reporter {
 
-    private final List<Report> reports;
+    public static final int DEFAULT_CAPACITY = 100000;
+
+    private static final class Entry {
+        private final long seq;
+        private final Report report;
+
+        private Entry(long seq, Report report) {
+            this.seq = seq;
+            this.report = report;
+        }
+    }
+
+    private final int capacity;
+    private final AtomicReferenceArray<Entry> slots;
+    private final AtomicLong next;
+    // run id -> sequence numbers of that run's reports, oldest first. Stale numbers are skipped on read.
+    private final Map<String, Queue<Long>> byRunId;
+    private final AtomicLongArray eventCounts;
 
     public InMemoryReporter() {
-        reports = new ArrayList<>();
+        this(DEFAULT_CAPACITY);
+    }
+
+    public InMemoryReporter(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        slots = new AtomicReferenceArray<>(capacity);
+        next = new AtomicLong(0);
+        byRunId = new ConcurrentHashMap<>();
+        eventCounts = new AtomicLongArray(Event.values().length);
     }
 
     @Override
     public InMemoryReporter report(Report report) {
-        reports.add(report);
+        report = assignRunId(report);
+        count(report);
+
+        long seq = next.getAndIncrement();
+        Entry entry = new Entry(seq, report);
+        byRunId.computeIfAbsent(report.runId(), k -> new ConcurrentLinkedQueue<>()).add(seq);
+
+        // A slow writer mustn't overwrite a newer report that already wrapped round into its slot.
+        int slot = slot(seq);
+        Entry evicted;
+        do {
+            evicted = slots.get(slot);
+            if(evicted != null && evicted.seq > seq) {
+                unindex(entry);
+                return this;
+            }
+        } while(!slots.compareAndSet(slot, evicted, entry));
+
+        if(evicted != null) {
+            unindex(evicted);
+        }
         return this;
     }
 
     @Override
     public InMemoryReporter report(Collection<Report> reports) {
-        reports.addAll(reports);
+        for(Report report : reports) {
+            report(report);
+        }
         return this;
     }
 
@@ -40,12 +102,86 @@ public class InMemoryReporter implements Reporter {
 
     @Override
     public List<Report> getRunReports(String runId) {
-        return reports.stream().filter(r -> r.runId().equals(runId)).collect(Collectors.toList());
+        Queue<Long> seqs = byRunId.get(runId);
+        List<Report> reports = new ArrayList<>();
+        if(seqs == null) {
+            return reports;
+        }
+        for(Long seq : seqs) {
+            Entry entry = slots.get(slot(seq));
+            if(entry != null && entry.seq == seq) {
+                reports.add(entry.report);
+            }
+        }
+        return reports;
     }
 
+    /**
+     * The retained reports, oldest first.
+     */
     @Override
     public List<Report> reports() {
-        return new ArrayList<>(reports);
+        long end = next.get();
+        long start = Math.max(0, end - capacity);
+        List<Report> reports = new ArrayList<>((int)(end - start));
+        for(long seq = start; seq < end; ++seq) {
+            Entry entry = slots.get(slot(seq));
+            if(entry != null && entry.seq == seq) {
+                reports.add(entry.report);
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * Number of reports received with this event, including any no longer retained.
+     */
+    public long count(Event event) {
+        return eventCounts.get(event.ordinal());
+    }
+
+    /**
+     * Number of reports received in total.
+     */
+    public long received() {
+        return next.get();
+    }
+
+    /**
+     * Number of reports overwritten to stay within capacity.
+     */
+    public long dropped() {
+        return Math.max(0, next.get() - capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % capacity);
+    }
+
+    private void count(Report report) {
+        if(report.event() == null) {
+            return;
+        }
+        try {
+            eventCounts.incrementAndGet(Event.valueOf(report.event()).ordinal());
+        } catch (IllegalArgumentException e) {
+            // not one of ours; still retained, just not counted
+        }
+    }
+
+    private void unindex(Entry evicted) {
+        String runId = evicted.report.runId();
+        Queue<Long> seqs = byRunId.get(runId);
+        if(seqs == null) {
+            return;
+        }
+        // Normally the head of the queue. Emptied queues are kept: there are few run ids, and removing
+        // them would race with a writer about to add to the same run.
+        seqs.remove(evicted.seq);
     }
 
 //    public Reporter reports(Predicate<Report> filter) {
@@ -55,7 +191,7 @@ public class InMemoryReporter implements Reporter {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for(Report report : reports){
+        for(Report report : reports()){
             sb.append(report.toString());
             sb.append(String.format("%n"));
         }
@@ -4,6 +4,7 @@ import com.casm.acled.crawler.scraper.ACLEDCommitter;
 import com.casm.acled.dao.entities.CrawlReportDAO;
 import com.casm.acled.entities.crawlreport.CrawlReport;
 import com.casm.acled.entities.source.Source;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -12,6 +13,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Created by Andrew D. Robertson on 21/10/2020.
@@ -37,13 +39,32 @@ public class ReportQueryService {
         if (latestRuns.isEmpty()){
             return ImmutableMap.of();
         }
-        // Get a list of all crawl reports for these runs
-        List<CrawlReport> reports = crawlReportDAO.byRunIdAndCrawlSource(latestRuns, sourceId, Source.class, ACLEDCommitter.class);
-        // Summarise the event counts by run ID
-        return summaryPerRun(reports, latestRuns);
+        // Use the pre-aggregated summary rows where the runs have them
+        Map<String, EventCountSummary> summaryPerRun = storedSummaryPerRun(latestRuns, sourceId, Source.class, ACLEDCommitter.class);
+
+        // Older runs, written before the summaries existed, still have to be counted from their reports
+        List<String> unsummarised = latestRuns.stream()
+                .filter(runId -> !summaryPerRun.containsKey(runId))
+                .collect(Collectors.toList());
+        Map<String, EventCountSummary> counted = ImmutableMap.of();
+        if (!unsummarised.isEmpty()){
+            List<CrawlReport> reports = crawlReportDAO.byRunIdAndCrawlSource(unsummarised, sourceId, Source.class, ACLEDCommitter.class);
+            counted = summaryPerRun(reports, unsummarised);
+        }
+
+        Map<String, EventCountSummary> ordered = new LinkedHashMap<>();
+        for (String runId : latestRuns){
+            ordered.put(runId, summaryPerRun.containsKey(runId) ? summaryPerRun.get(runId) : counted.get(runId));
+        }
+        return ordered;
     }
 
     public EventCountSummary summaryForRun(String runId, int id, Class<?> type, Class<?> reporterType){
+        Map<String, EventCountSummary> stored = storedSummaryPerRun(ImmutableList.of(runId), id, type, reporterType);
+        if (stored.containsKey(runId)){
+            return stored.get(runId);
+        }
+
         List<CrawlReport> reports = crawlReportDAO.byRunIdAndCrawlSource(runId, id, type, reporterType);
 
         EventCountSummary summary = new EventCountSummary();
@@ -56,6 +77,28 @@ public class ReportQueryService {
         return summary;
     }
 
+    /**
+     * Sum the RUN_SUMMARY rows written by EventCounters for each run that has any. Runs without
+     * summaries are left out of the map.
+     *
+     * DBReporter writes a source's summary when its crawl finishes and adds anything reported later to
+     * the same row, so a run's summary counts every event up to the source's last flush; reports since
+     * then aren't in it yet. Older runs may have several partial summary rows, hence the sum.
+     */
+    public Map<String, EventCountSummary> storedSummaryPerRun(List<String> runIds, int id, Class<?> type, Class<?> reporterType){
+        List<CrawlReport> summaries = crawlReportDAO.byRunIdAndCrawlSource(runIds, id, type, EventCounters.class);
+
+        Map<String, EventCountSummary> summaryPerRun = new HashMap<>();
+        for (CrawlReport cr : summaries){
+            Report summary = Report.of(cr);
+            if (!reporterType.getName().equals(EventCounters.reporterType(summary))){
+                continue;
+            }
+            EventCounters.addTo(summaryPerRun.computeIfAbsent(summary.runId(), k -> new EventCountSummary()), summary);
+        }
+        return summaryPerRun;
+    }
+
     /**
      * Generate a mapping of run IDs to summary of event counts from a list of crawl reports.
      * The map's ordering of IDs will respect the order of IDs in runIdOrder.
@@ -20,6 +20,20 @@ public interface Reporter {
 
     List<Report> reports();
 
+    /**
+     * Make sure every report received so far has been stored.
+     */
+    default Reporter flush() {
+        return this;
+    }
+
+    /**
+     * As flush(), at the end of one source's crawl: summaries need only cover that source.
+     */
+    default Reporter flush(Integer id) {
+        return flush();
+    }
+
 //    default String randomRunId() {
 //        if(runId() == null){
 //            runId(UUID.randomUUID().toString());
@@ -26,7 +26,9 @@ import java.io.InputStream;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 
 // qiwei added for testing, delete later:
@@ -58,6 +60,12 @@ public class ACLEDCommitter implements ICommitter {
     private final boolean recordRaw;
 
     private Supplier<HttpCollector> collectorSupplier;
+    private ArticleWriter articleWriter;
+    private RawHtmlStore rawHtmlStore;
+
+    // Articles stored for the source, seeded once in setMaxArticles and then counted in memory.
+    private ToIntFunction<Source> articleCounter;
+    private final AtomicInteger articleCount;
 
 
     public ACLEDCommitter(ArticleDAO articleDAO, Source source,
@@ -71,15 +79,44 @@ public class ACLEDCommitter implements ICommitter {
         this.reporter = reporter;
         maxArticles = null;
         this.recordRaw = recordRaw;
+        articleCount = new AtomicInteger(0);
     }
 
     public void setCollectorSupplier(Supplier<HttpCollector> collectorSupplier) {
         this.collectorSupplier = collectorSupplier;
     }
 
+    /**
+     * Queue articles on the given writer instead of creating them one at a time.
+     * commit() and close() flush anything still queued.
+     */
+    public void setArticleWriter(ArticleWriter articleWriter) {
+        this.articleWriter = articleWriter;
+    }
+
+    /**
+     * Write raw HTML to the given store and keep only its reference on the article,
+     * instead of the compressed page itself.
+     */
+    public void setRawHtmlStore(RawHtmlStore rawHtmlStore) {
+        this.rawHtmlStore = rawHtmlStore;
+    }
+
+    /**
+     * How to count the articles already stored for the source, needed before a limit is set;
+     * see ArticleCountService for a count-only query.
+     */
+    public void setArticleCounter(ToIntFunction<Source> articleCounter) {
+        this.articleCounter = articleCounter;
+    }
+
     public void setMaxArticles(Integer maxArticles) {
         if(maxArticles != null && maxArticles >= 0) {
+            if(articleCounter == null) {
+                throw new IllegalStateException("an article counter is needed to apply a max articles limit");
+            }
             this.maxArticles = maxArticles;
+            articleCount.set(articleCounter.applyAsInt(source));
         }
     }
 
@@ -99,7 +136,8 @@ public class ACLEDCommitter implements ICommitter {
     }
 
     private boolean stopAfterNArticlesFromSource(Source source) {
-        if(maxArticles != null && articleDAO.bySource(source).size() >= maxArticles) {
+        // Claims a slot for the article about to be committed, so concurrent crawler threads can't overshoot.
+        if(maxArticles != null && articleCount.incrementAndGet() > maxArticles) {
             stop(collectorSupplier.get());
             return true;
         }
@@ -150,16 +188,15 @@ public class ACLEDCommitter implements ICommitter {
     }
 
     private String getRaw(InputStream inputStream, Properties properties, String url) {
-        StringWriter writer = new StringWriter();
         try {
-            IOUtils.copy(inputStream, writer, properties.getString("document.contentEncoding"));
+            // compressed straight from the stream, see RawHtml and RawHtmlStore
+            String charset = properties.getString("document.contentEncoding");
+            return rawHtmlStore != null ?
+                    rawHtmlStore.write(inputStream, charset) :
+                    RawHtml.encode(inputStream, charset);
         } catch (Exception ex) {
             throw new RuntimeException("ERROR: Failed to retrieve web content for url: " + url);
         }
-
-        String rawHtml = writer.toString();
-
-        return rawHtml;
     }
 
     private void commitArticle(String url, String date, String standardDate, String title, String keywordHighlight,
@@ -197,7 +234,11 @@ public class ACLEDCommitter implements ICommitter {
 
         if (!stopAfterNArticlesFromSource(source)) {
             article = article.put(Article.SOURCE_ID, source.id());
-            articleDAO.create(article);
+            if(articleWriter != null) {
+                articleWriter.add(article);
+            } else {
+                articleDAO.create(article);
+            }
         }
 
 //        saveToLocal(article, Paths.get("/Users/pengqiwei/Downloads/My/PhDs/acled_thing/exports/test_with_andy/Articulo 66_test111.csv"));
@@ -316,6 +357,14 @@ public class ACLEDCommitter implements ICommitter {
 
     @Override
     public void commit() {
+        if(articleWriter != null) {
+            articleWriter.flush();
+        }
+    }
 
+    public void close() {
+        if(articleWriter != null) {
+            articleWriter.close();
+        }
     }
 }
@@ -10,7 +10,6 @@ import com.casm.acled.crawler.reporting.Reporter;
 import com.casm.acled.crawler.util.Util;
 import com.casm.acled.entities.article.Article;
 import com.casm.acled.entities.source.Source;
-import org.apache.commons.io.IOUtils;
 import org.apache.http.client.HttpClient;
 import com.norconex.collector.http.doc.HttpDocument;
 import com.norconex.collector.http.processor.IHttpDocumentProcessor;
@@ -18,6 +17,7 @@ import com.norconex.commons.lang.file.ContentType;
 
 // jsoup
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 //
 //// logging imports
 import org.slf4j.Logger;
@@ -86,8 +86,8 @@ public class ACLEDScraper implements IHttpDocumentProcessor {
 
     private void load() throws IOException {
 
-        String processed = Util.processJSON(scraperPath.toFile());
-        Map<String, List<Map<String, String>>> scraperDef = buildScraperDefinition(GeneralSplitterFactory.parseJsonTagSet(processed));
+        // parsed once per job.json content, see ScraperDefinitions
+        Map<String, List<Map<String, String>>> scraperDef = new HashMap<>(ScraperDefinitions.get(scraperPath).getFields());
         scraper = new GeneralSplitterFactory(scraperDef);
         splitter = scraper.create();
     }
@@ -117,26 +117,21 @@ public class ACLEDScraper implements IHttpDocumentProcessor {
         return fields;
     }
 
-    private String getRawHTML(HttpDocument doc) {
-        StringWriter sw = new StringWriter();
-
+    private Document parse(HttpDocument doc) {
         try {
-            IOUtils.copy(doc.getContent(), sw, doc.getContentEncoding());
+            // Jsoup decodes the stream itself, rather than us copying it into a String first
+            return Jsoup.parse(doc.getContent(), doc.getContentEncoding(), doc.getReference());
         } catch (IOException e) {
             String url = doc.getReference();
             throw new RuntimeException("ERROR: Failed to retrieve web content for url: " + url);
         }
-
-        String html = sw.toString();
-        return html;
     }
 
     @Override
     public void processDocument(HttpClient httpClient, HttpDocument doc) {
 
         if(isText(doc)) {
-            String html = getRawHTML(doc);
-            LinkedList<Post> posts = splitter.split(Jsoup.parse(html));
+            LinkedList<Post> posts = splitter.split(parse(doc));
 
             if(posts.size() > 0) {
                 Post post = posts.get(0);
@@ -4,37 +4,112 @@ import com.google.common.collect.ImmutableMap;
 import com.norconex.importer.doc.ImporterMetadata;
 import com.norconex.importer.handler.ImporterHandlerException;
 import com.norconex.importer.handler.tagger.impl.DOMTagger;
+import com.norconex.importer.util.DOMUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+import org.jsoup.select.Selector;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Simple wrapper for the DOMTagger class to provide convenient public access to the
  * underlying protected tagApplicableDocument() method of the DOMTagger.
  * Returned by the ACLEDTagger.get() method.
+ *
+ * Each page is parsed once: script and style elements are dropped from the tree (so the crawl needs no
+ * regex pass over the page beforehand), then every selector runs against it. Selectors are compiled once
+ * and shared between taggers, rather than per page. Of each DOMExtractDetails, the selector, toField,
+ * overwrite and extract are honoured, which is all ACLEDTaggerFactory sets; blank values are skipped, as
+ * DOMTagger does.
  */
 public class ACLEDTagger extends DOMTagger {
 
+    private static final Evaluator STRIPPED = QueryParser.parse("script, style");
+
+    // shared by every tagger, as the same scraper's selectors are built into a new tagger for each crawl and check
+    private static final Map<String, Evaluator> SELECTORS = new ConcurrentHashMap<>();
+
     /**
      * Convenience method for directly tagging a String of html.
      * Permits public availability of the functionality of the protected tagApplicableDocument() method.
      */
     public Map<String, String> tag(String html) throws ImporterHandlerException {
 
-        return tag(new ByteArrayInputStream(html.getBytes()));
+        ImporterMetadata metadata = new ImporterMetadata();
+
+        extract(Jsoup.parse(html, "", DOMUtil.toJSoupParser(getParser())), metadata);
+
+        return fields(metadata);
     }
 
     public Map<String, String> tag(InputStream html) throws ImporterHandlerException {
 
         ImporterMetadata metadata = new ImporterMetadata();
 
-        super.tagApplicableDocument("", html, metadata, false);
+        tagApplicableDocument("", html, metadata, false);
 
+        return fields(metadata);
+    }
+
+    private static Map<String, String> fields(ImporterMetadata metadata) {
         return new ImmutableMap.Builder<String, String>()
                 .put(ScraperFields.SCRAPED_ARTICLE, metadata.getString(ScraperFields.SCRAPED_ARTICLE))
                 .put(ScraperFields.SCRAPED_DATE, metadata.getString(ScraperFields.SCRAPED_DATE))
                 .put(ScraperFields.SCRAPED_TITLE, metadata.getString(ScraperFields.SCRAPED_TITLE))
                 .build();
     }
+
+    @Override
+    protected void tagApplicableDocument(String reference, InputStream document, ImporterMetadata metadata,
+                                         boolean parsed) throws ImporterHandlerException {
+        Document doc;
+        try {
+            // null lets jsoup take the charset from the BOM or meta tag, or default to UTF-8
+            doc = Jsoup.parse(document, metadata.getString(ImporterMetadata.DOC_CONTENT_ENCODING), reference,
+                    DOMUtil.toJSoupParser(getParser()));
+        } catch (IOException e) {
+            throw new ImporterHandlerException("Cannot parse document: " + reference, e);
+        }
+        extract(doc, metadata);
+    }
+
+    /**
+     * Strip script and style elements from the document, then put what each selector matches into the metadata.
+     */
+    public void extract(Document doc, ImporterMetadata metadata) {
+
+        Selector.select(STRIPPED, doc).remove();
+
+        for(DOMExtractDetails details : getDOMExtractDetailsList()) {
+            List<String> values = new ArrayList<>();
+            for(Element element : Selector.select(selector(details.getSelector()), doc)) {
+                String value = DOMUtil.getElementValue(element, details.getExtract());
+                if(StringUtils.isNotBlank(value)) {
+                    values.add(value);
+                }
+            }
+            if(values.isEmpty()) {
+                continue;
+            }
+            String[] array = values.toArray(new String[0]);
+            if(details.isOverwrite()) {
+                metadata.setString(details.getToField(), array);
+            } else {
+                metadata.addString(details.getToField(), array);
+            }
+        }
+    }
+
+    private static Evaluator selector(String selector) {
+        return SELECTORS.computeIfAbsent(StringUtils.trim(selector), QueryParser::parse);
+    }
 }
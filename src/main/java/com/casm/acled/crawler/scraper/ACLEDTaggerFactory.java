@@ -21,7 +21,6 @@ import com.norconex.importer.util.DOMUtil;
 import com.norconex.importer.handler.tagger.impl.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import uk.ac.susx.tag.norconex.scraping.GeneralSplitterFactory;
 import uk.ac.susx.tag.norconex.scraping.POJOHTMLMatcherDefinition;
 
 /**
@@ -77,25 +76,14 @@ public class ACLEDTaggerFactory {
         return fields;
     }
 
-    private Map<String, List<Map<String, String>>> getDef() {
-
-        String processed = Util.processJSON(scraperPath.toFile());
-
-        try {
-
-            Map<String, List<Map<String, String>>> scraperDef = buildScraperDefinition(GeneralSplitterFactory.parseJsonTagSet(processed));
-            return scraperDef;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private void loadRule(Source source, Map<String, List<Map<String, String>>> scraperDef, DOMTagger tagger, String sourceField, String prop, String pipelineField) {
+    private void loadRule(Source source, DOMTagger tagger, String sourceField, String prop, String pipelineField) {
         if (source.hasValue(sourceField)) {
             String articleRule = source.get(sourceField);
             addDOMDetailsSingleFromQuery(articleRule, prop, pipelineField, tagger);
         } else {
-            addDOMDetailsSingle(scraperDef, prop, pipelineField, tagger);
+            // the definition is only read when a rule isn't on the source, and its details built once
+            tagger.addDOMExtractDetails(ScraperDefinitions.get(scraperPath)
+                    .details(prop, pipelineField, def -> domDetailsSingle(def, prop, pipelineField)));
         }
 
     }
@@ -104,11 +92,9 @@ public class ACLEDTaggerFactory {
         // hoow to separate them.. all from file; all from source; part from file and part from source;
         ACLEDTagger tagger = new ACLEDTagger();
 
-        Map<String, List<Map<String, String>>> scraperDef = getDef();
-
-        loadRule(source, scraperDef, tagger, Source.SCRAPER_RULE_ARTICLE, ARTICLE, ScraperFields.SCRAPED_ARTICLE);
-        loadRule(source, scraperDef, tagger, Source.SCRAPER_RULE_TITLE, TITLE, ScraperFields.SCRAPED_TITLE);
-        loadRule(source, scraperDef, tagger, Source.SCRAPER_RULE_DATE, DATE, ScraperFields.SCRAPED_DATE);
+        loadRule(source, tagger, Source.SCRAPER_RULE_ARTICLE, ARTICLE, ScraperFields.SCRAPED_ARTICLE);
+        loadRule(source, tagger, Source.SCRAPER_RULE_TITLE, TITLE, ScraperFields.SCRAPED_TITLE);
+        loadRule(source, tagger, Source.SCRAPER_RULE_DATE, DATE, ScraperFields.SCRAPED_DATE);
 
         return tagger;
     }
@@ -223,6 +209,10 @@ public class ACLEDTaggerFactory {
     }
 
     public void addDOMDetailsSingle(Map<String, List<Map<String, String>>> scraperDef, String fromField, String toField, DOMTagger tagger) {
+        tagger.addDOMExtractDetails(domDetailsSingle(scraperDef, fromField, toField));
+    }
+
+    public static DOMExtractDetails domDetailsSingle(Map<String, List<Map<String, String>>> scraperDef, String fromField, String toField) {
         String rootSelector = constructRoot(scraperDef);
         if (!rootSelector.equals("")) {
             rootSelector = rootSelector + " ";
@@ -270,7 +260,7 @@ public class ACLEDTaggerFactory {
         if(att != null) {
             extract = "attr("+att+")";
         }
-        tagger.addDOMExtractDetails(new DOMExtractDetails(rootSelector + selector, toField, true, extract));
+        return new DOMExtractDetails(rootSelector + selector, toField, true, extract);
 
     }
 
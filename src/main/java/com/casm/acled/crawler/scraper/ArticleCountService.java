@@ -0,0 +1,33 @@
+package com.casm.acled.crawler.scraper;
+
+import com.casm.acled.crawler.management.ConfigService;
+import com.casm.acled.entities.source.Source;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Counts the articles already stored for a source without loading them.
+ *
+ * Runs crawler.articleCountQuery (a single "?" parameter, the source id) against acled_article. A failed
+ * query is an error: loading every article through the DAO instead is what this is here to avoid.
+ */
+@Service
+public class ArticleCountService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ConfigService configService;
+
+    public int count(Source source) {
+        try {
+            Integer count = jdbcTemplate.queryForObject(configService.getArticleCountQuery(), Integer.class, source.id());
+            return count == null ? 0 : count;
+        } catch (DataAccessException e) {
+            throw new RuntimeException("article count query failed for source " + source.id(), e);
+        }
+    }
+}
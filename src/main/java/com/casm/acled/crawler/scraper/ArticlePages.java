@@ -0,0 +1,181 @@
+package com.casm.acled.crawler.scraper;
+
+import com.casm.acled.AcledObjectMapper;
+import com.casm.acled.crawler.management.ConfigService;
+import com.casm.acled.entities.EntityVersions;
+import com.casm.acled.entities.article.Article;
+import com.casm.acled.entities.source.Source;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks the articles of a source in id order, a page at a time, so only one page is ever loaded.
+ *
+ * Each page is one run of crawler.articlePageQuery (parameters: source id, last id seen, page size), which
+ * returns the page's acled_article rows (id, business_key, data); the articles are rebuilt from them here
+ * rather than fetched again one at a time through the DAO. A failed query is an error: loading every
+ * article through the DAO instead is what this is here to avoid.
+ *
+ * The rebuilt articles are the current Article version and only have the fields it knows, so they're never
+ * written back whole. Pages.write() sets just the given fields in each row's data as it was read, with
+ * crawler.articleUpdateQuery, so whatever else a row holds is kept as it was.
+ */
+@Service
+public class ArticlePages {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ConfigService configService;
+
+    public ArticlePages() {}
+
+    ArticlePages(JdbcTemplate jdbcTemplate, ConfigService configService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.configService = configService;
+    }
+
+    /**
+     * The pages of one source's articles, which can write changes to the last page back.
+     */
+    public class Pages implements Iterator<List<Article>> {
+
+        private final Source source;
+        private final int size;
+        private int last;
+        private List<Article> next;
+        // each row's data as read, for the page last returned
+        private Map<Integer, ObjectNode> stored = new HashMap<>();
+        private Map<Integer, ObjectNode> nextStored = new HashMap<>();
+
+        private Pages(Source source, int after, int size) {
+            this.source = source;
+            this.last = after;
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if(next == null) {
+                next = page();
+            }
+            return !next.isEmpty();
+        }
+
+        @Override
+        public List<Article> next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            List<Article> page = next;
+            next = null;
+            stored = nextStored;
+            nextStored = new HashMap<>();
+            return page;
+        }
+
+        /**
+         * Set the fields of these articles, from the page last returned, in their rows. Everything else in the
+         * rows is left as it was read.
+         */
+        public void write(List<Article> changed, Collection<String> fields) {
+            ObjectMapper mapper = AcledObjectMapper.get();
+            List<Object[]> updates = new ArrayList<>(changed.size());
+            for(Article article : changed) {
+                ObjectNode data = stored.get(article.id());
+                if(data == null) {
+                    throw new IllegalArgumentException("article " + article.id() + " isn't on the last page read");
+                }
+                updates.add(new Object[] {merge(data, article, fields, mapper).toString(), article.id()});
+            }
+            try {
+                jdbcTemplate.batchUpdate(configService.getArticleUpdateQuery(), updates);
+            } catch (DataAccessException e) {
+                throw new RuntimeException("article update failed for source " + source.id(), e);
+            }
+        }
+
+        private List<Article> page() {
+            try {
+                List<Article> page = jdbcTemplate.query(configService.getArticlePageQuery(),
+                        (rs, i) -> article(rs, nextStored), source.id(), last, size);
+                if(!page.isEmpty()) {
+                    last = page.get(page.size() - 1).id();
+                }
+                return page;
+            } catch (DataAccessException e) {
+                throw new RuntimeException("article page query failed for source " + source.id() + " after article " + last, e);
+            }
+        }
+    }
+
+    /**
+     * @param after only articles with an id greater than this; 0 for all.
+     */
+    public Pages pages(Source source, int after, int size) {
+        return new Pages(source, after, size);
+    }
+
+    /**
+     * @return a copy of the row's data with the fields set from the article, removing those it has no value for.
+     */
+    static ObjectNode merge(ObjectNode data, Article article, Collection<String> fields, ObjectMapper mapper) {
+        ObjectNode merged = data.deepCopy();
+        for(String field : fields) {
+            if(article.hasValue(field)) {
+                Object value = article.get(field);
+                merged.set(field, mapper.valueToTree(value));
+            } else {
+                merged.remove(field);
+            }
+        }
+        return merged;
+    }
+
+    private static Article article(ResultSet rs, Map<Integer, ObjectNode> stored) throws SQLException {
+        Article article = EntityVersions.get(Article.class).current().id(rs.getInt("id"));
+        String businessKey = rs.getString("business_key");
+        if(businessKey != null) {
+            article = article.businessKey(businessKey);
+        }
+
+        ObjectMapper mapper = AcledObjectMapper.get();
+        JsonNode data;
+        try {
+            data = mapper.readTree(rs.getString("data"));
+        } catch (IOException e) {
+            throw new SQLException("unreadable data for article " + article.id(), e);
+        }
+        if(!data.isObject()) {
+            throw new SQLException("data for article " + article.id() + " isn't an object");
+        }
+        stored.put(article.id(), (ObjectNode) data);
+
+        Collection<String> fields = article.spec().names();
+        Iterator<Map.Entry<String, JsonNode>> values = data.fields();
+        while(values.hasNext()) {
+            Map.Entry<String, JsonNode> value = values.next();
+            if(fields.contains(value.getKey()) && !value.getValue().isNull()) {
+                article = article.put(value.getKey(), mapper.convertValue(value.getValue(), article.spec().get(value.getKey()).getKlass()));
+            }
+        }
+        return article;
+    }
+}
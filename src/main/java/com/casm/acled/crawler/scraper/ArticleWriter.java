@@ -0,0 +1,197 @@
+package com.casm.acled.crawler.scraper;
+
+import com.casm.acled.dao.entities.ArticleDAO;
+import com.casm.acled.entities.article.Article;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind buffer for the articles accepted by the ACLEDCommitter.
+ *
+ * Articles are put on a bounded queue by the crawler threads and written by a single background
+ * thread in batches, through the collection overload of ArticleDAO.create. A batch is written once
+ * it reaches batchSize or once flushInterval has passed since its first article was queued.
+ * When the queue is full, add() blocks until the writer catches up.
+ */
+public class ArticleWriter implements AutoCloseable {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ArticleWriter.class);
+
+    private final ArticleDAO articleDAO;
+    private final BlockingQueue<Article> queue;
+    private final int batchSize;
+    private final long flushInterval;
+
+    // Articles added but not yet written, including those in the batch currently being written.
+    private final AtomicInteger pending;
+    private final AtomicLong written;
+    private final Object lock;
+
+    private final Thread writer;
+    private volatile boolean running;
+
+    public ArticleWriter(ArticleDAO articleDAO, int batchSize, long flushInterval, int queueCapacity) {
+        if(batchSize < 1 || flushInterval < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("batch size, flush interval and queue capacity must all be positive");
+        }
+        this.articleDAO = articleDAO;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        pending = new AtomicInteger(0);
+        written = new AtomicLong(0);
+        lock = new Object();
+
+        running = true;
+        writer = new Thread(this::drain, "article-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void add(Article article) {
+        pending.incrementAndGet();
+
+        if(!running) {
+            write(Collections.singletonList(article));
+            return;
+        }
+
+        try {
+            queue.put(article);
+        } catch (InterruptedException e) {
+            pending.decrementAndGet();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        // close() may have stopped the writer since the check above; don't leave the article queued
+        if(!running) {
+            writeQueued();
+        }
+    }
+
+    /**
+     * Write everything queued so far and wait for any batch the background thread is part way
+     * through. Articles queued while waiting are written too, so an add() racing close() is never
+     * left behind.
+     */
+    public void flush() {
+        while(true) {
+            writeQueued();
+
+            synchronized (lock) {
+                if(pending.get() == 0) {
+                    return;
+                }
+                try {
+                    lock.wait(flushInterval);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    public long written() {
+        return written.get();
+    }
+
+    private void drain() {
+        while(running) {
+            try {
+                Article first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if(first == null) {
+                    continue;
+                }
+
+                List<Article> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+
+                long deadline = System.currentTimeMillis() + flushInterval;
+                while(batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.currentTimeMillis();
+                    if(batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Article next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if(next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeQueued() {
+        List<Article> batch = new ArrayList<>();
+        queue.drainTo(batch);
+
+        for(List<Article> part : partition(batch)) {
+            write(part);
+        }
+    }
+
+    private List<List<Article>> partition(List<Article> articles) {
+        List<List<Article>> parts = new ArrayList<>();
+        for(int i = 0; i < articles.size(); i += batchSize) {
+            parts.add(articles.subList(i, Math.min(i + batchSize, articles.size())));
+        }
+        return parts;
+    }
+
+    private void write(List<Article> batch) {
+        try {
+            articleDAO.create(batch);
+            written.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            // Don't lose the whole batch to one bad row - fall back to writing them one by one.
+            logger.warn("batch write of {} articles failed, retrying individually: {}", batch.size(), e.getMessage());
+            for(Article article : batch) {
+                try {
+                    articleDAO.create(article);
+                    written.incrementAndGet();
+                } catch (RuntimeException ex) {
+                    logger.error("failed to write article " + article.get(Article.URL), ex);
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                pending.addAndGet(-batch.size());
+                lock.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.casm.acled.crawler.scraper;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Raw HTML as stored in Article.SCRAPE_RAW_HTML: the page's bytes, deflated and base64'd, with the charset
+ * needed to decode them, e.g. "deflate:UTF-8:eJy...".
+ *
+ * encode() streams the page straight into the compressed form, so the page is never held as a String while
+ * crawling; decode() is only needed by the rescrape. Values stored before this format (plain HTML) are
+ * decoded as they are.
+ */
+public final class RawHtml {
+
+    private static final String PREFIX = "deflate:";
+
+    private RawHtml() {}
+
+    /**
+     * @param charset of the bytes; null for UTF-8.
+     */
+    public static String encode(InputStream html, String charset) throws IOException {
+        String cs = charset == null || charset.isEmpty() ? StandardCharsets.UTF_8.name() : Charset.forName(charset).name();
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        encoded.write((PREFIX + cs + ":").getBytes(StandardCharsets.US_ASCII));
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (OutputStream out = new DeflaterOutputStream(Base64.getEncoder().wrap(encoded), deflater)) {
+            IOUtils.copy(html, out);
+        } finally {
+            deflater.end();
+        }
+
+        return encoded.toString(StandardCharsets.US_ASCII.name());
+    }
+
+    public static boolean isEncoded(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /**
+     * @return the HTML, or null if stored is null.
+     */
+    public static String decode(String stored) {
+        if(!isEncoded(stored)) {
+            return stored;
+        }
+        int split = stored.indexOf(':', PREFIX.length());
+        String charset = stored.substring(PREFIX.length(), split);
+
+        InputStream base64 = new ByteArrayInputStream(stored.substring(split + 1).getBytes(StandardCharsets.US_ASCII));
+        try (InputStream in = new InflaterInputStream(Base64.getDecoder().wrap(base64))) {
+            return IOUtils.toString(in, charset);
+        } catch (IOException e) {
+            throw new RuntimeException("corrupt raw html", e);
+        }
+    }
+}
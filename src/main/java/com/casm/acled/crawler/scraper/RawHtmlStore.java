@@ -0,0 +1,155 @@
+package com.casm.acled.crawler.scraper;
+
+import com.casm.acled.crawler.management.ConfigService;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-addressed store for raw HTML, so the article rows only hold a reference like "blob:UTF-8:3f2a...",
+ * and a page committed for several source lists, or crawled again unchanged, is stored once.
+ *
+ * Pages are kept gzipped in the database, one row per page keyed by the SHA-256 of its bytes (see
+ * crawler.rawHtmlTable), so every host that reads the articles can read their pages too. Writes stream the
+ * page through the digest and compressor, then insert it unless that hash is already there.
+ *
+ * read() and open() also accept the inline forms stored before (see RawHtml), so callers needn't care which
+ * they have.
+ */
+@Service
+public class RawHtmlStore {
+
+    protected static final Logger logger = LoggerFactory.getLogger(RawHtmlStore.class);
+
+    private static final String PREFIX = "blob:";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ConfigService configService;
+
+    public RawHtmlStore() {}
+
+    RawHtmlStore(JdbcTemplate jdbcTemplate, ConfigService configService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.configService = configService;
+    }
+
+    @PostConstruct
+    public void init() {
+        if(configService.isRawHtmlStore()) {
+            try {
+                jdbcTemplate.execute(configService.getRawHtmlTable());
+            } catch (DataAccessException e) {
+                throw new RuntimeException("can't create the raw html table", e);
+            }
+        }
+    }
+
+    /**
+     * @param charset of the bytes; null for UTF-8.
+     * @return the reference to store in Article.SCRAPE_RAW_HTML.
+     */
+    public String write(InputStream html, String charset) throws IOException {
+        String cs = charset == null || charset.isEmpty() ? StandardCharsets.UTF_8.name() : Charset.forName(charset).name();
+
+        MessageDigest digest = sha256();
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (InputStream in = new DigestInputStream(html, digest);
+             OutputStream out = new GZIPOutputStream(gzipped)) {
+            IOUtils.copy(in, out);
+        }
+
+        String hash = hex(digest.digest());
+        try {
+            // a no-op if the page is already there, written by this or any other host; same bytes
+            jdbcTemplate.update(configService.getRawHtmlInsertQuery(), hash, gzipped.toByteArray());
+        } catch (DataAccessException e) {
+            throw new IOException("can't store raw html " + hash, e);
+        }
+        return PREFIX + cs + ":" + hash;
+    }
+
+    public static boolean isReference(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    private static String charset(String stored) {
+        return stored.substring(PREFIX.length(), stored.indexOf(':', PREFIX.length()));
+    }
+
+    private static String hash(String stored) {
+        return stored.substring(stored.indexOf(':', PREFIX.length()) + 1);
+    }
+
+    /**
+     * @return the page's bytes, in the charset given when it was written, or for inline values the
+     * decoded HTML as UTF-8.
+     */
+    public InputStream open(String stored) throws IOException {
+        if(isReference(stored)) {
+            String hash = hash(stored);
+            List<byte[]> gzipped;
+            try {
+                gzipped = jdbcTemplate.queryForList(configService.getRawHtmlQuery(), byte[].class, hash);
+            } catch (DataAccessException e) {
+                throw new IOException("can't load raw html " + hash, e);
+            }
+            if(gzipped.isEmpty()) {
+                throw new IOException("no raw html " + hash);
+            }
+            return new GZIPInputStream(new ByteArrayInputStream(gzipped.get(0)));
+        }
+        return new ByteArrayInputStream(RawHtml.decode(stored).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the HTML, or null if stored is null.
+     */
+    public String read(String stored) {
+        if(!isReference(stored)) {
+            return RawHtml.decode(stored);
+        }
+        try (InputStream in = open(stored)) {
+            return IOUtils.toString(in, charset(stored));
+        } catch (IOException e) {
+            throw new RuntimeException("can't read raw html " + stored, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
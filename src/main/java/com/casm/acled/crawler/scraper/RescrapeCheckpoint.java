@@ -0,0 +1,86 @@
+package com.casm.acled.crawler.scraper;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * How far a rescrape of a source got: the last article id whose page was fully written back, with the
+ * running totals. Saved after every page, so a rescrape that dies picks up after the last complete page
+ * when it's run again with the same dates, and deleted once the rescrape finishes.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class RescrapeCheckpoint {
+
+    protected static final Logger logger = LoggerFactory.getLogger(RescrapeCheckpoint.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public int sourceId;
+    public String from;
+    public String to;
+    public int lastId;
+    public int processed;
+    public int changed;
+
+    public RescrapeCheckpoint() {}
+
+    public RescrapeCheckpoint(int sourceId, LocalDate from, LocalDate to) {
+        this.sourceId = sourceId;
+        this.from = from == null ? null : from.toString();
+        this.to = to == null ? null : to.toString();
+    }
+
+    public static Path file(Path dir, int sourceId) {
+        return dir.resolve("rescrape-" + sourceId + ".json");
+    }
+
+    /**
+     * @return the saved checkpoint if it's for the same source and dates, otherwise a fresh one.
+     */
+    public static RescrapeCheckpoint load(Path dir, int sourceId, LocalDate from, LocalDate to) {
+        RescrapeCheckpoint fresh = new RescrapeCheckpoint(sourceId, from, to);
+        Path file = file(dir, sourceId);
+        if(!Files.exists(file)) {
+            return fresh;
+        }
+        try {
+            RescrapeCheckpoint saved = MAPPER.readValue(file.toFile(), RescrapeCheckpoint.class);
+            if(saved.sourceId == sourceId && Objects.equals(saved.from, fresh.from) && Objects.equals(saved.to, fresh.to)) {
+                return saved;
+            }
+            logger.info("ignoring rescrape checkpoint {} for different dates", file);
+        } catch (IOException e) {
+            logger.warn("ignoring unreadable rescrape checkpoint " + file, e);
+        }
+        return fresh;
+    }
+
+    public void save(Path dir) {
+        Path file = file(dir, sourceId);
+        try {
+            Files.createDirectories(dir);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            MAPPER.writeValue(tmp.toFile(), this);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("couldn't save rescrape checkpoint " + file, e);
+        }
+    }
+
+    public void clear(Path dir) {
+        try {
+            Files.deleteIfExists(file(dir, sourceId));
+        } catch (IOException e) {
+            logger.warn("couldn't delete rescrape checkpoint", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.casm.acled.crawler.scraper;
+
+import com.casm.acled.crawler.util.Util;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.norconex.importer.handler.tagger.impl.DOMTagger.DOMExtractDetails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.susx.tag.norconex.scraping.GeneralSplitterFactory;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Parsed job.json scraper definitions, shared by every ACLEDTaggerFactory and ACLEDScraper in the JVM.
+ *
+ * A definition is parsed once per path and content: each get() only stats the file, and re-reads it when
+ * its modified time or size has changed, re-parsing only if the content hash differs too. The extract
+ * details built from a definition are cached alongside it, so they go when the file changes.
+ */
+public final class ScraperDefinitions {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ScraperDefinitions.class);
+
+    public static final class Definition {
+        private final long modified;
+        private final long size;
+        private final HashCode hash;
+        private final Map<String, List<Map<String, String>>> fields;
+        private final ConcurrentMap<String, DOMExtractDetails> details = new ConcurrentHashMap<>();
+
+        private Definition(long modified, long size, HashCode hash, Map<String, List<Map<String, String>>> fields) {
+            this.modified = modified;
+            this.size = size;
+            this.hash = hash;
+            this.fields = fields;
+        }
+
+        private Definition touched(long modified, long size) {
+            Definition definition = new Definition(modified, size, hash, fields);
+            definition.details.putAll(details);
+            return definition;
+        }
+
+        public Map<String, List<Map<String, String>>> getFields() {
+            return fields;
+        }
+
+        public HashCode getHash() {
+            return hash;
+        }
+
+        /**
+         * @return the extract details built for a field of this definition, building them once.
+         */
+        public DOMExtractDetails details(String fromField, String toField,
+                                         Function<Map<String, List<Map<String, String>>>, DOMExtractDetails> build) {
+            return details.computeIfAbsent(fromField + "->" + toField, k -> build.apply(fields));
+        }
+    }
+
+    private static final ConcurrentMap<Path, Definition> DEFINITIONS = new ConcurrentHashMap<>();
+
+    private static final AtomicLong PARSES = new AtomicLong();
+
+    private ScraperDefinitions() {}
+
+    /**
+     * @param jobJson a scraper's job.json.
+     */
+    public static Definition get(Path jobJson) {
+        Path key = jobJson.toAbsolutePath().normalize();
+        return DEFINITIONS.compute(key, (path, cached) -> {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                long modified = attributes.lastModifiedTime().toMillis();
+                long size = attributes.size();
+                if(cached != null && cached.modified == modified && cached.size == size) {
+                    return cached;
+                }
+
+                byte[] bytes = Files.readAllBytes(path);
+                HashCode hash = Hashing.sha256().hashBytes(bytes);
+                if(cached != null && cached.hash.equals(hash)) {
+                    return cached.touched(modified, size);
+                }
+
+                if(cached != null) {
+                    logger.info("scraper definition {} changed, reloading", path);
+                }
+                PARSES.incrementAndGet();
+                String processed = Util.processJobJSON(new String(bytes, Charset.defaultCharset()));
+                Map<String, List<Map<String, String>>> fields =
+                        ACLEDTaggerFactory.buildScraperDefinition(GeneralSplitterFactory.parseJsonTagSet(processed));
+                return new Definition(modified, size, hash, Collections.unmodifiableMap(fields));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * @return how many times a definition has been parsed, rather than served from the cache.
+     */
+    public static long parses() {
+        return PARSES.get();
+    }
+
+    public static void clear() {
+        DEFINITIONS.clear();
+    }
+}
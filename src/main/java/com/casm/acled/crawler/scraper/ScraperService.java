@@ -2,11 +2,13 @@ package com.casm.acled.crawler.scraper;
 
 
 import com.casm.acled.camunda.variables.Process;
+import com.casm.acled.crawler.management.ConfigService;
 import com.casm.acled.crawler.reporting.*;
 import com.casm.acled.crawler.scraper.dates.CompositeDateParser;
 import com.casm.acled.crawler.scraper.dates.DateParser;
 import com.casm.acled.crawler.scraper.dates.DateTimeService;
 import com.casm.acled.crawler.scraper.keywords.KeywordsService;
+import com.casm.acled.crawler.spring.SharedHttpClient;
 import com.casm.acled.crawler.util.Util;
 import com.casm.acled.dao.entities.ArticleDAO;
 import com.casm.acled.dao.entities.CrawlReportDAO;
@@ -21,7 +23,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.ibm.icu.util.ULocale;
 import com.norconex.collector.core.CollectorException;
-import com.norconex.collector.http.client.impl.GenericHttpClientFactory;
 import com.norconex.collector.http.doc.HttpDocument;
 import com.norconex.collector.http.fetch.HttpFetchResponse;
 import com.norconex.collector.http.fetch.impl.GenericDocumentFetcher;
@@ -56,6 +57,10 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -64,6 +69,10 @@ public class ScraperService {
 
     protected static final Logger logger = LoggerFactory.getLogger(ScraperService.class);
 
+    // the fields a rescrape sets, and so the only ones written back
+    private static final List<String> RESCRAPED_FIELDS = ImmutableList.of(
+            Article.TITLE, Article.TEXT, Article.SCRAPE_DATE, Article.DATE);
+
     private static Path scraperDir = Paths.get("/home/sw206/git/acled-scrapers");
 
     @Autowired
@@ -84,6 +93,18 @@ public class ScraperService {
     @Autowired
     private DateTimeService dateTimeService;
 
+    @Autowired
+    private RawHtmlStore rawHtmlStore;
+
+    @Autowired
+    private ArticlePages articlePages;
+
+    @Autowired
+    private ConfigService configService;
+
+    @Autowired
+    private SharedHttpClient sharedHttpClient;
+
 
     public void checkScraperCoverage(Path scraperDir, SourceList sourceList) {
 
@@ -149,59 +170,135 @@ public class ScraperService {
     /**
      * Rescrape articles from raw html for a given source between two dates.
      * Dates can be null to ignore upper/lower bound.
+     *
+     * Articles are read a page at a time (crawler.rescrapePageSize) and scraped on crawler.rescrapeParallelism
+     * threads; the rescraped fields of each page's changed articles are written back before the next is read. Progress is saved to
+     * the working dir after every page, so running it again for the same source and dates after a failure
+     * carries on from there.
+     *
+     * @return the number of articles changed, including by any earlier attempt being resumed.
      */
     public int reScrape(Source source, LocalDate from, LocalDate to, Path scraperDir) throws ImporterHandlerException {
-        // Get all articles from this source, we'll constrain date by from/to if specified.
-        List<Article> articles = articleDAO.bySource(source);
+
+        Path workingDir = configService.getWorkingDir();
+        RescrapeCheckpoint checkpoint = RescrapeCheckpoint.load(workingDir, source.id(), from, to);
+        if(checkpoint.lastId > 0) {
+            logger.info("resuming rescrape of source {} after article {}, {} articles done, {} changed",
+                    source.id(), checkpoint.lastId, checkpoint.processed, checkpoint.changed);
+        }
 
         // Only both re-parsing if source has a date format specified
         boolean hasDateFormat = source.hasValue(Source.DATE_FORMAT);
 
-        // Track number of changed articles after re-scrape
-        int changed = 0;
-
-        ACLEDTagger scraper = getScraper(source, scraperDir);
-
-        for (ListIterator<Article> iterator = articles.listIterator(); iterator.hasNext();){
-            Article article = iterator.next();
+        // Fail before reading any articles if there's no scraper; after that, one per worker thread
+        getScraper(source, scraperDir);
+        ThreadLocal<ACLEDTagger> scrapers = ThreadLocal.withInitial(() -> getScraper(source, scraperDir));
 
-            String html = article.get(Article.SCRAPE_RAW_HTML);
+        AtomicInteger n = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(configService.getRescrapeParallelism(), r -> {
+            Thread thread = new Thread(r, "rescrape-" + n.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
 
-            // Only update articles that :
-            //   1. have raw html data to work with, and
-            //   2. fall within requested dates or have a missing Article.DATE value
-            if (html != null && (!article.hasValue(Article.DATE) || dateTimeService.isInRange(article.get(Article.DATE), from, to))) {
-
-                // Perform scrape
-                Map<String, String> scraped = scraper.tag(html);
+        long start = System.currentTimeMillis();
+        int processed = 0;
+        try {
+            ArticlePages.Pages pages = articlePages.pages(source, checkpoint.lastId, configService.getRescrapePageSize());
+            while(pages.hasNext()) {
+                List<Article> page = pages.next();
 
-                // Make updated article
-                Article updated = article
-                        .put(Article.TITLE, scraped.getOrDefault(ScraperFields.SCRAPED_TITLE, ""))
-                        .put(Article.TEXT, scraped.getOrDefault(ScraperFields.SCRAPED_ARTICLE, ""))
-                        .put(Article.SCRAPE_DATE, scraped.getOrDefault(ScraperFields.SCRAPED_DATE, ""));
+                List<Future<Optional<Article>>> futures = new ArrayList<>(page.size());
+                for(Article article : page) {
+                    futures.add(executor.submit(() -> reScrape(article, scrapers.get(), source, from, to, hasDateFormat)));
+                }
 
-                // If article has a scraped date, try re-parsing it
-                if (hasDateFormat && updated.hasValue(Article.SCRAPE_DATE)) {
-                    Optional<LocalDate> parsed = dateTimeService.parseDate(updated.get(Article.SCRAPE_DATE), source);
-                    if (parsed.isPresent()){
-                        updated = updated.put(Article.DATE, parsed.get());
-                    }
+                List<Article> changed = new ArrayList<>();
+                for(Future<Optional<Article>> future : futures) {
+                    future.get().ifPresent(changed::add);
                 }
 
-                // If article has been updated, prepare to upsert it
-                if (!article.equals(updated)) {
-                    iterator.set(updated);
-                    changed++;
+                if(!changed.isEmpty()) {
+                    pages.write(changed, RESCRAPED_FIELDS);
                 }
+
+                processed += page.size();
+                checkpoint.lastId = page.get(page.size() - 1).id();
+                checkpoint.processed += page.size();
+                checkpoint.changed += changed.size();
+                checkpoint.save(workingDir);
+
+                double rate = processed * 1000.0 / Math.max(1, System.currentTimeMillis() - start);
+                logger.info("rescrape of source {}: {} articles done, {} changed, {} articles/s",
+                        source.id(), checkpoint.processed, checkpoint.changed, String.format("%.1f", rate));
+                reporter.report(Report.of(Event.RESCRAPE_PROGRESS, source.id())
+                        .message("%d articles done, %d changed, %.1f articles/s", checkpoint.processed, checkpoint.changed, rate));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException && e.getCause().getCause() instanceof ImporterHandlerException) {
+                throw (ImporterHandlerException)e.getCause().getCause();
             }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        checkpoint.clear(workingDir);
+
+        return checkpoint.changed;
+    }
+
+    /**
+     * @return the rescraped article, if it was in range and has changed.
+     */
+    private Optional<Article> reScrape(Article article, ACLEDTagger scraper, Source source, LocalDate from, LocalDate to,
+                                      boolean hasDateFormat) {
+
+        String stored = article.get(Article.SCRAPE_RAW_HTML);
+
+        // Only update articles that :
+        //   1. have raw html data to work with, and
+        //   2. fall within requested dates or have a missing Article.DATE value
+        if (stored == null || (article.hasValue(Article.DATE) && !dateTimeService.isInRange(article.get(Article.DATE), from, to))) {
+            return Optional.empty();
         }
 
-        if (changed > 0){
-            articleDAO.overwrite(articles);
+        // Decompress the raw html only now we know it's needed. A blob that can't be loaded leaves that article
+        // as it is rather than failing the whole rescrape.
+        String html;
+        try {
+            html = rawHtmlStore.read(stored);
+        } catch (RuntimeException e) {
+            logger.warn("rescrape of source {}: skipping article {}, {}", source.id(), article.id(), e.getMessage());
+            return Optional.empty();
+        }
+
+        Map<String, String> scraped;
+        try {
+            scraped = scraper.tag(html);
+        } catch (ImporterHandlerException e) {
+            throw new RuntimeException(e);
+        }
+
+        // Make updated article
+        Article updated = article
+                .put(Article.TITLE, scraped.getOrDefault(ScraperFields.SCRAPED_TITLE, ""))
+                .put(Article.TEXT, scraped.getOrDefault(ScraperFields.SCRAPED_ARTICLE, ""))
+                .put(Article.SCRAPE_DATE, scraped.getOrDefault(ScraperFields.SCRAPED_DATE, ""));
+
+        // If article has a scraped date, try re-parsing it
+        if (hasDateFormat && updated.hasValue(Article.SCRAPE_DATE)) {
+            Optional<LocalDate> parsed = dateTimeService.parseDate(updated.get(Article.SCRAPE_DATE), source);
+            if (parsed.isPresent()){
+                updated = updated.put(Article.DATE, parsed.get());
+            }
         }
 
-        return changed;
+        // If article has been updated, it needs writing back
+        return article.equals(updated) ? Optional.empty() : Optional.of(updated);
     }
 
     public HttpDocument scrapeURL(ACLEDScraper scraper, String url, Source source) {
@@ -209,7 +306,7 @@ public class ScraperService {
 
         String name = source.get(Source.STANDARD_NAME);
 
-        HttpClient client = new GenericHttpClientFactory().createHTTPClient("www.acleddata.com");
+        HttpClient client = sharedHttpClient.client();
         CachedInputStream inputStream = new CachedStreamFactory(10 * 1096, 10 * 1096).newInputStream("");
 
         HttpDocument document = new HttpDocument(url, inputStream);
@@ -240,7 +337,7 @@ public class ScraperService {
         GenericDocumentFetcher fetcher = new GenericDocumentFetcher();
         fetcher.setDetectCharset(true);
 
-        HttpClient client = new GenericHttpClientFactory().createHTTPClient("www.acleddata.com");
+        HttpClient client = sharedHttpClient.client();
         CachedInputStream inputStream = new CachedStreamFactory(10 * 1024, 10 * 1024).newInputStream("");
         List<String> exampleURLs = source.get(Source.EXAMPLE_URLS);
 
@@ -271,7 +368,7 @@ public class ScraperService {
 
         GenericDocumentFetcher fetcher = new GenericDocumentFetcher();
 
-        HttpClient client = new GenericHttpClientFactory().createHTTPClient("www.acleddata.com");
+        HttpClient client = sharedHttpClient.client();
         CachedInputStream inputStream = new CachedStreamFactory(10 * 1024, 10 * 1024).newInputStream("");
         List<String> exampleURLs = source.get(Source.EXAMPLE_URLS);
 
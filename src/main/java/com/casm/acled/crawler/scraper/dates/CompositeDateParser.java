@@ -10,17 +10,119 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+/**
+ * Tries each of its parsers in turn, returning the first successful parse.
+ *
+ * Successes are counted per parser (see getSuccessCounts). An adaptive composite also uses those counts
+ * to try the parsers that usually succeed first: every REORDER_INTERVAL successful parses the order is
+ * recomputed as a stable sort by success count, ties keeping configuration order.
+ *
+ * The order never changes the result: where more than one spec can parse a date, the one configured first
+ * wins, as with a static composite. An adaptive composite works out when it's built which of its parsers
+ * can read the same dates, by having each ISO spec write some sample dates and the others read them back;
+ * NL specs, and ISO ones with RE or STRIP, are taken to overlap everything. When a parser matches, only
+ * those configured before it that it overlaps and that haven't been tried yet are tried too, and the
+ * earliest of those that matches is used (and credited) instead. So an ambiguous date such as 03/04/2020
+ * under dd/MM and MM/dd parses the same whatever the crawl history or thread interleaving, while a
+ * promoted spec that can't be confused with the ones before it saves trying them. CoverageCalculator
+ * reports overlaps seen in practice.
+ */
 public class CompositeDateParser implements DateParser {
 
+    private static final int REORDER_INTERVAL = 32;
+
+    // written by each ISO spec to find the others that read it: days either side of 12, both halves of the day
+    private static final List<LocalDateTime> OVERLAP_SAMPLES = ImmutableList.of(
+            LocalDateTime.of(2020, 3, 4, 9, 5),
+            LocalDateTime.of(2019, 11, 26, 17, 45),
+            LocalDateTime.of(2021, 12, 31, 23, 59),
+            LocalDateTime.of(2018, 7, 13, 0, 0));
+
     private final List<DateParser> parsers;
 
+    private final boolean adaptive;
+    private final AtomicLongArray successes;
+    private final AtomicLong successCount;
+    // Indices into parsers, in the order they are tried; replaced wholesale on reorder.
+    private volatile int[] order;
+    // overlaps[i][j] for j < i: parsers i and j may read the same date. Only for an adaptive composite.
+    private final boolean[][] overlaps;
+
     public CompositeDateParser(List<DateParser> parsers) {
+        this(parsers, false);
+    }
+
+    public CompositeDateParser(List<DateParser> parsers, boolean adaptive) {
         this.parsers = Lists.newArrayList(parsers);
+        this.adaptive = adaptive;
+        successes = new AtomicLongArray(this.parsers.size());
+        successCount = new AtomicLong();
+        order = IntStream.range(0, this.parsers.size()).toArray();
+        overlaps = adaptive ? overlaps(this.parsers) : null;
+    }
+
+    private static boolean[][] overlaps(List<DateParser> parsers) {
+        List<List<String>> samples = parsers.stream().map(CompositeDateParser::samples).collect(Collectors.toList());
+        boolean[][] overlaps = new boolean[parsers.size()][];
+        for(int i = 0; i < parsers.size(); ++i) {
+            overlaps[i] = new boolean[i];
+            for(int j = 0; j < i; ++j) {
+                overlaps[i][j] = overlap(parsers.get(i), samples.get(i), parsers.get(j), samples.get(j));
+            }
+        }
+        return overlaps;
+    }
+
+    /**
+     * @return the sample dates as the parser writes them, or null if it can't say what it reads.
+     */
+    private static List<String> samples(DateParser parser) {
+        if(!(parser instanceof DateFormatParser)) {
+            return null;
+        }
+        List<String> samples = new ArrayList<>();
+        for(LocalDateTime date : OVERLAP_SAMPLES) {
+            samples.addAll(((DateFormatParser) parser).format(date));
+        }
+        return samples.isEmpty() ? null : samples;
+    }
+
+    private static boolean overlap(DateParser a, List<String> aSamples, DateParser b, List<String> bSamples) {
+        if(aSamples == null || bSamples == null) {
+            return true;
+        }
+        return aSamples.stream().anyMatch(date -> b.parse(date).isPresent())
+                || bSamples.stream().anyMatch(date -> a.parse(date).isPresent());
+    }
+
+    /**
+     * @return whether a match by the parser at configuration index i is checked against the one at j < i.
+     */
+    boolean overlaps(int i, int j) {
+        return overlaps != null && overlaps[i][j];
+    }
+
+    /**
+     * A copy of this parser that reorders its parsers by success.
+     */
+    public CompositeDateParser adaptive() {
+        return new CompositeDateParser(parsers, true);
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
     }
 
     @Override
@@ -45,17 +147,62 @@ public class CompositeDateParser implements DateParser {
 
     @Override
     public Optional<LocalDateTime> parse(String date) {
-        Optional<LocalDateTime> attempt =  Optional.empty();
+        int[] order = this.order;
+        boolean[] tried = new boolean[parsers.size()];
 
-        for(DateParser parser : parsers ) {
-            Optional<LocalDateTime> parse = parser.parse(date);
+        for(int i : order) {
+            Optional<LocalDateTime> parse = parsers.get(i).parse(date);
             if(parse.isPresent()) {
-                attempt = parse;
-                break;
+                for(int j = 0; j < i; ++j) {
+                    if(!tried[j] && overlaps(i, j)) {
+                        Optional<LocalDateTime> earlier = parsers.get(j).parse(date);
+                        if(earlier.isPresent()) {
+                            succeeded(j);
+                            return earlier;
+                        }
+                    }
+                }
+                succeeded(i);
+                return parse;
             }
+            tried[i] = true;
+        }
+
+        return Optional.empty();
+    }
+
+    private void succeeded(int i) {
+        successes.incrementAndGet(i);
+        if(successCount.incrementAndGet() % REORDER_INTERVAL == 0 && adaptive) {
+            reorder();
+        }
+    }
+
+    private synchronized void reorder() {
+        order = IntStream.range(0, parsers.size())
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer i) -> successes.get(i)).reversed()
+                        .thenComparingInt(i -> i))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * Successful parses per spec, in configuration order.
+     */
+    public Map<String, Long> getSuccessCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for(int i = 0; i < parsers.size(); ++i) {
+            counts.merge(String.join(" | ", parsers.get(i).getFormatSpec()), successes.get(i), Long::sum);
         }
+        return counts;
+    }
 
-        return attempt;
+    /**
+     * The parsers in the order they are currently tried.
+     */
+    public List<DateParser> getOrder() {
+        return Arrays.stream(order).mapToObj(parsers::get).collect(Collectors.toList());
     }
 
 
@@ -67,7 +214,7 @@ public class CompositeDateParser implements DateParser {
             newParsers.add(dateParser.locale(locales));
         }
 
-        return new CompositeDateParser(newParsers);
+        return new CompositeDateParser(newParsers, adaptive);
     }
 
     public static DateParser of(List<String> formatSpecs) {
@@ -75,7 +222,28 @@ public class CompositeDateParser implements DateParser {
         return of(formatSpecs, null);
     }
 
+    /**
+     * As of(formatSpecs, timezone), but adaptive.
+     */
+    public static CompositeDateParser adaptive(List<String> formatSpecs, String timezone) {
+        return adaptive(formatSpecs, timezone, null);
+    }
+
+    /**
+     * As of(formatSpecs, timezone, usage), but adaptive.
+     */
+    public static CompositeDateParser adaptive(List<String> formatSpecs, String timezone, DateParsingServiceClient.Usage usage) {
+        return ((CompositeDateParser) of(formatSpecs, timezone, usage)).adaptive();
+    }
+
     public static DateParser of(List<String> formatSpecs, String timezone) {
+        return of(formatSpecs, timezone, null);
+    }
+
+    /**
+     * @param usage counts the date service lookups of any NL specs, if not null.
+     */
+    public static DateParser of(List<String> formatSpecs, String timezone, DateParsingServiceClient.Usage usage) {
 
         List<DateParser> parsers = new ArrayList<>();
 
@@ -94,7 +262,7 @@ public class CompositeDateParser implements DateParser {
                         throw new RuntimeException("If using natural language date parser, timezone should not be null.");
                     }
                     else {
-                        NaturalLanguageDateParser nldp = new NaturalLanguageDateParser(spec, timezone);
+                        NaturalLanguageDateParser nldp = new NaturalLanguageDateParser(spec, timezone, usage);
                         parsers.add(nldp);
                         break;
                     }
@@ -150,6 +150,9 @@ public class CoverageCalculator {
             LOG.info("Success: {}, Failure: {}, Coverage: {}",
                     dpc.getSuccessCount(), dpc.getFailureCount(), dpc.getCoverage()
             );
+            if (dpc.getParser() instanceof CompositeDateParser) {
+                logSuccessCounts((CompositeDateParser) dpc.getParser());
+            }
             LOG.info("------------------------------------------");
 
 
@@ -174,6 +177,15 @@ public class CoverageCalculator {
         );
     }
 
+    /**
+     * Log which of a composite parser's specs actually produced its successful parses.
+     */
+    public static void logSuccessCounts(CompositeDateParser parser) {
+        for (Map.Entry<String, Long> entry : parser.getSuccessCounts().entrySet()) {
+            LOG.info("  {} : {}", entry.getKey(), entry.getValue());
+        }
+    }
+
     public static void main(String... args) throws IOException {
 
 //        List<String> examples = ImmutableList.of("Monday, 27 January 2020 4:44 PM  [ Last Update: Monday, 27 January 2020 6:24 PM ]");
@@ -2,6 +2,7 @@ package com.casm.acled.crawler.scraper.dates;
 
 import com.google.common.collect.ImmutableList;
 import com.ibm.icu.text.*;
+import com.ibm.icu.util.TimeZone;
 import com.ibm.icu.util.ULocale;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -15,7 +16,9 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -26,8 +29,34 @@ class DateFormatParser implements DateParser {
 
     protected static final Logger logger = LoggerFactory.getLogger(DateFormatParser.class);
 
+    // Compiled ICU formatters are expensive to build and not thread-safe, so each thread keeps its own,
+    // keyed by (spec, locale) and shared by every parser with that spec.
+    private static final int MAX_CACHED_FORMATS = 512;
+    private static final ThreadLocal<Map<String, CachedFormat>> FORMATS = ThreadLocal.withInitial(() ->
+            new LinkedHashMap<String, CachedFormat>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedFormat> eldest) {
+                    return size() > MAX_CACHED_FORMATS;
+                }
+            });
+
+    private static class CachedFormat {
+        private final SimpleDateFormat formatter;
+        // Parsing a zone name changes the formatter's zone, so it is put back before each use.
+        private final TimeZone timeZone;
+
+        private CachedFormat(SimpleDateFormat formatter) {
+            this.formatter = formatter;
+            timeZone = formatter.getTimeZone();
+        }
+    }
+
     private final String formatSpec;
 
+    private final String pattern;
+    private final ULocale specLocale;
+
+    private boolean fixAMPM;
     private boolean removeOrdinals;
     private boolean fixBST;
     private boolean normaliseWhitespace; // &nbsp etc;
@@ -51,12 +80,26 @@ class DateFormatParser implements DateParser {
     public DateFormatParser(String formatSpec, List<ULocale> locales) {
         this.formatSpec = formatSpec;
         this.locales = locales;
+        fixAMPM = false;
         removeOrdinals = false;
         fixBST = false;
         normaliseWhitespace = true;
         extractPattern = null;
         stripPattern = null;
 
+        String delim = Pattern.quote(formatSpec.substring(0,1));
+
+        String[] parts = formatSpec.split(delim);
+        pattern = parts[1];
+        if(parts.length > 2 && !parts[2].isEmpty()) {
+            specLocale = new ULocale(parts[2]);
+        } else {
+            specLocale = null;
+        }
+
+        for(int i = 3; i < parts.length; ++i) {
+            processFlag(parts[i]);
+        }
     }
 
     @Override
@@ -78,7 +121,7 @@ class DateFormatParser implements DateParser {
         return Optional.empty();
     }
     public Optional<LocalDateTime> parse(String date, ULocale locale) {
-        SimpleDateFormat formatter = buildSimpleDateFormat(formatSpec, locale);
+        SimpleDateFormat formatter = formatter(locale);
 
         Optional<LocalDateTime> attempt = Optional.empty();
         date = preProcessDate(date);
@@ -170,9 +213,9 @@ class DateFormatParser implements DateParser {
         return formatter;
     }
 
-    private SimpleDateFormat processFlag(SimpleDateFormat formatter, String flag) {
+    private void processFlag(String flag) {
         if(flag.equals("AMPM")) {
-            formatter = fixAMPM(formatter);
+            fixAMPM = true;
         } else if(flag.equals("ORD")) {
             removeOrdinals = true;
         } else if(flag.startsWith("RE")) {
@@ -184,8 +227,22 @@ class DateFormatParser implements DateParser {
         } else {
             logger.warn("Unrecognised DateFormatParser flag : " + flag);
         }
+    }
 
-        return formatter;
+    /**
+     * The date as this spec writes it, once per locale. Empty if the spec extracts from or strips its input
+     * (RE or STRIP), as what it reads is then nothing like what it writes.
+     */
+    List<String> format(LocalDateTime date) {
+        if(extractPattern != null || stripPattern != null) {
+            return ImmutableList.of();
+        }
+        Date d = Date.from(date.atZone(ZoneId.systemDefault()).toInstant());
+        List<String> formatted = new ArrayList<>();
+        for(ULocale locale : locales) {
+            formatted.add(formatter(locale).format(d));
+        }
+        return formatted;
     }
 
     @Override
@@ -198,15 +255,25 @@ class DateFormatParser implements DateParser {
         return formatSpec;
     }
 
-    public SimpleDateFormat buildSimpleDateFormat(String formatSpec, ULocale locale) {
-        String delim = Pattern.quote(formatSpec.substring(0,1));
+    private SimpleDateFormat formatter(ULocale locale) {
+        Map<String, CachedFormat> formats = FORMATS.get();
+        String key = formatSpec + "|" + locale.getName();
 
-        String[] parts = formatSpec.split(delim);
-        String pattern = parts[1];
-        if(parts.length > 2 && !parts[2].isEmpty()) {
-            locale = new ULocale(parts[2]);
+        CachedFormat format = formats.get(key);
+        if(format == null) {
+            format = new CachedFormat(buildSimpleDateFormat(locale));
+            formats.put(key, format);
+        } else {
+            format.formatter.setTimeZone(format.timeZone);
         }
 
+        return format.formatter;
+    }
+
+    public SimpleDateFormat buildSimpleDateFormat(ULocale locale) {
+        if(specLocale != null) {
+            locale = specLocale;
+        }
 
         // set up the generator
 //        DateTimePatternGenerator generator
@@ -215,8 +282,8 @@ class DateFormatParser implements DateParser {
         // get a pattern for an abbreviated month and day
         SimpleDateFormat formatter = new SimpleDateFormat(pattern, locale);
 
-        for(int i = 3; i < parts.length; ++i) {
-            formatter = processFlag(formatter, parts[i]);
+        if(fixAMPM) {
+            formatter = fixAMPM(formatter);
         }
 
         return formatter;
@@ -0,0 +1,221 @@
+package com.casm.acled.crawler.scraper.dates;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide client for the python dateparser service (datetimeparser-http), used by
+ * NaturalLanguageDateParser for whatever RelativeDateParser can't handle.
+ *
+ * All parsers share one pooled keep-alive HTTP client, and results are cached by expression, languages
+ * and timezone, since the same "yesterday"/"2 hours ago" strings turn up on thousands of pages in a run.
+ * What's cached is how far the result was from the time of the request, applied to the time of each
+ * lookup, so "3 hours ago" is always 3 hours before now. An absolute date is out by however long its
+ * entry has been cached, so entries expire after CACHE_TTL minutes. Failed parses, error responses and
+ * outages aren't cached.
+ *
+ * Lookups can be counted per user (e.g. per crawl) with a Usage, as well as process-wide.
+ */
+public final class DateParsingServiceClient {
+
+    protected static final Logger logger = LoggerFactory.getLogger(DateParsingServiceClient.class);
+
+    private static final String PARSING_SERVICE = "http://localhost:5555/parse";
+    private static final DateTimeFormatter PARSING_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final int MAX_CONNECTIONS = 16;
+    private static final int TIMEOUT = 10000;
+    private static final int MAX_SIZE = 10000;
+    private static final long CACHE_TTL = 10;
+
+    private static final CloseableHttpClient CLIENT;
+    static {
+        PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+        connections.setMaxTotal(MAX_CONNECTIONS);
+        connections.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+        CLIENT = HttpClients.custom()
+                .setConnectionManager(connections)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(TIMEOUT)
+                        .setSocketTimeout(TIMEOUT)
+                        .build())
+                .build();
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // result minus the time of the request
+    private static final Cache<String, Duration> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfterWrite(CACHE_TTL, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+
+    private static final AtomicLong requests = new AtomicLong(0);
+    private static final AtomicLong requestNanos = new AtomicLong(0);
+
+    /**
+     * One user's lookups.
+     */
+    public static class Usage {
+        private final AtomicLong hits = new AtomicLong(0);
+        private final AtomicLong misses = new AtomicLong(0);
+        private final AtomicLong requests = new AtomicLong(0);
+        private final AtomicLong requestNanos = new AtomicLong(0);
+
+        public long hits() {
+            return hits.get();
+        }
+
+        public long misses() {
+            return misses.get();
+        }
+
+        public long requests() {
+            return requests.get();
+        }
+
+        public long requestNanos() {
+            return requestNanos.get();
+        }
+    }
+
+    private DateParsingServiceClient() {}
+
+    public static Optional<LocalDateTime> parse(String expression, String languages, String timezone) {
+        return parse(expression, languages, timezone, null);
+    }
+
+    /**
+     * @param usage counts this lookup, if not null.
+     */
+    public static Optional<LocalDateTime> parse(String expression, String languages, String timezone, Usage usage) {
+        String key = expression + "|" + languages + "|" + timezone;
+        ZoneId zone = zone(timezone);
+
+        Duration offset = CACHE.getIfPresent(key);
+        if(offset != null) {
+            if(usage != null) {
+                usage.hits.incrementAndGet();
+            }
+            return Optional.of(now(zone).plus(offset));
+        }
+
+        LocalDateTime requested = now(zone);
+        long start = System.nanoTime();
+        Optional<LocalDateTime> parsed;
+        try {
+            parsed = request(expression, languages, timezone);
+        } catch (IOException | URISyntaxException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if(usage != null) {
+                usage.misses.incrementAndGet();
+                usage.requests.incrementAndGet();
+                usage.requestNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        parsed.ifPresent(date -> CACHE.put(key, Duration.between(requested, date)));
+        return parsed;
+    }
+
+    static Optional<LocalDateTime> request(String expression, String languages, String timezone) throws IOException, URISyntaxException {
+        URIBuilder uri = new URIBuilder(PARSING_SERVICE)
+                .addParameter("relative_expression", expression)
+                .addParameter("languages", languages);
+        if(timezone != null) {
+            uri.addParameter("timezone", timezone);
+        }
+
+        HttpGet get = new HttpGet(uri.build());
+        get.setHeader("Accept", "application/json");
+
+        long start = System.nanoTime();
+        try (CloseableHttpResponse response = CLIENT.execute(get)) {
+            HttpEntity entity = response.getEntity();
+            String body = entity == null ? null : EntityUtils.toString(entity);
+
+            int status = response.getStatusLine().getStatusCode();
+            if(status >= 200 && status < 300 && body != null) {
+                Map<String, String> data = MAPPER.readValue(body, new TypeReference<Map<String, String>>(){});
+                String parsed = data.get("parsed");
+                if(parsed != null) {
+                    return Optional.of(LocalDateTime.parse(parsed, PARSING_FORMAT));
+                }
+            }
+            logger.info("NL date parsed failed {}", expression);
+            return Optional.empty();
+        } finally {
+            requests.incrementAndGet();
+            requestNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    // the service's results are to the second
+    private static LocalDateTime now(ZoneId zone) {
+        return LocalDateTime.now(zone).truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    private static ZoneId zone(String timezone) {
+        if(timezone != null) {
+            try {
+                return ZoneId.of(timezone);
+            } catch (DateTimeException e) {
+                // fall through to the system zone; a cached offset is applied in the zone it was taken in
+            }
+        }
+        return ZoneId.systemDefault();
+    }
+
+    public static long hits() {
+        return CACHE.stats().hitCount();
+    }
+
+    public static long misses() {
+        return CACHE.stats().missCount();
+    }
+
+    public static long requests() {
+        return requests.get();
+    }
+
+    public static long requestNanos() {
+        return requestNanos.get();
+    }
+
+    public static CacheStats stats() {
+        return CACHE.stats();
+    }
+
+    public static void clear() {
+        CACHE.invalidateAll();
+    }
+}
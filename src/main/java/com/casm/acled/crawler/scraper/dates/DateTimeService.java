@@ -154,7 +154,7 @@ public class DateTimeService {
 
             String timezone = source.get(Source.TIMEZONE);
 //            DateParser existing = CompositeDateParser.of(formatSpecs);
-            DateParser existing = CompositeDateParser.of(formatSpecs, timezone);
+            CompositeDateParser existing = (CompositeDateParser) CompositeDateParser.of(formatSpecs, timezone);
 
             List<String> exampleDates = exampleGetter.apply(source);
 
@@ -167,6 +167,9 @@ public class DateTimeService {
                 }
             }
 
+            reporter.report(Report.of(Event.DATE_SPEC_USAGE, source.id())
+                    .message(existing.getSuccessCounts().toString()));
+
             return passed;
         } else {
             return false;
@@ -1,28 +1,27 @@
 package com.casm.acled.crawler.scraper.dates;
 
-import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.ibm.icu.util.ULocale;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
-import org.apache.cxf.jaxrs.client.WebClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.ws.rs.core.GenericType;
-import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response;
+import java.time.Clock;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 
 /**
- * TODO: none of these work in other lang - farm this out to python date parser https://pypi.org/project/dateparser/ over HTTP
+ * Relative dates ("3 hours ago", "hace 2 días", "prije 5 minuta") are parsed in-process by RelativeDateParser.
+ * Anything it doesn't recognise is farmed out to the python date parser https://pypi.org/project/dateparser/
+ * over HTTP through the shared, caching DateParsingServiceClient.
  */
 class NaturalLanguageDateParser implements DateParser {
 
@@ -30,12 +29,15 @@ class NaturalLanguageDateParser implements DateParser {
 
     public static final String PROTOCOL = "NL";
 
-    private static final String PARSING_SERVICE = "http://localhost:5555/parse";
-    private static final String PARSING_FORMAT = "yyyy-MM-dd HH:mm:ss";
-
     private final String languages;
+    private final List<String> languageCodes;
 
     private String timezone;
+    // null if the timezone isn't one java.time understands, in which case only the HTTP service is used.
+    private final ZoneId zone;
+    private final Clock clock;
+    // counts this parser's service lookups, if not null
+    private final DateParsingServiceClient.Usage usage;
 
     private final Pattern triggers;
     private final String spec;
@@ -46,11 +48,27 @@ class NaturalLanguageDateParser implements DateParser {
         this(spec, Lists.newArrayList(ULocale.getDefault()), timezone);
     }
 
+    public NaturalLanguageDateParser(String spec, String timezone, DateParsingServiceClient.Usage usage) {
+        this(spec, Lists.newArrayList(ULocale.getDefault()), timezone, Clock.systemUTC(), usage);
+    }
+
     /// for NL parser, timezone is required, so remove constructors without timezone
 
     public NaturalLanguageDateParser(String spec, List<ULocale> locales, String timezone) {
+        this(spec, locales, timezone, Clock.systemUTC());
+    }
+
+    NaturalLanguageDateParser(String spec, List<ULocale> locales, String timezone, Clock clock) {
+        this(spec, locales, timezone, clock, null);
+    }
+
+    NaturalLanguageDateParser(String spec, List<ULocale> locales, String timezone, Clock clock,
+                              DateParsingServiceClient.Usage usage) {
         this.spec = spec;
+        this.usage = usage;
         this.timezone = timezone;
+        this.zone = zone(timezone);
+        this.clock = clock;
 
         String delim = Pattern.quote(spec.substring(0,1));
         String[] parts = spec.split(delim);
@@ -62,46 +80,45 @@ class NaturalLanguageDateParser implements DateParser {
             locales.add(new ULocale(parts[2]));
         }
 
-        languages = "[\""+locales.stream().map(ULocale::getLanguage).collect(Collectors.joining("\",\""))+"\"]";
+        languageCodes = locales.stream().map(ULocale::getLanguage).collect(Collectors.toList());
+        languages = "[\""+String.join("\",\"", languageCodes)+"\"]";
+    }
+
+    private static ZoneId zone(String timezone) {
+        if(timezone == null || timezone.isEmpty()) {
+            return ZoneId.systemDefault();
+        }
+        try {
+            return ZoneId.of(timezone);
+        } catch (DateTimeException e) {
+            logger.warn("NL timezone {} not recognised, relative dates will go to the parsing service", timezone);
+            return null;
+        }
     }
 
     @Override
     public NaturalLanguageDateParser locale(List<ULocale> locales) {
-        return new NaturalLanguageDateParser(spec, locales, this.timezone);
+        return new NaturalLanguageDateParser(spec, locales, this.timezone, this.clock, this.usage);
     }
 
     @Override
     public Optional<LocalDateTime> parse(String date) {
-        boolean makeAttempt = false;
-        Optional<LocalDateTime> attempt = Optional.empty();
-        if(triggers.matcher(date).find()) {
-            makeAttempt = true;
+        if(!triggers.matcher(date).find()) {
+            return Optional.empty();
         }
-        if(makeAttempt) {
-
-            WebClient webClient = WebClient.create(PARSING_SERVICE,
-                    Collections.singletonList(new JacksonJsonProvider()))
-                    .accept(MediaType.APPLICATION_JSON_TYPE);
-
-            webClient.query("relative_expression", date);
-            webClient.query("languages", languages);
-            webClient.query("timezone", timezone);
-
-            Response response = webClient.get();
-            int status = response.getStatus();
-            if(status >= 200 && status < 300) {
-                Map<String,String> data = response.readEntity(new GenericType<Map<String,String>>(){});
-
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern(PARSING_FORMAT);
 
-                LocalDateTime parsed = LocalDateTime.parse(data.get("parsed"), formatter);
-
-                attempt = Optional.of(parsed);
-            } else {
-                logger.info("NL date parsed failed {}", date);
+        if(zone != null) {
+            Optional<LocalDateTime> local = RelativeDateParser.parse(date, languageCodes, zone, clock);
+            if(local.isPresent()) {
+                return local;
             }
         }
-        return attempt;
+
+        return parseRemote(date);
+    }
+
+    Optional<LocalDateTime> parseRemote(String date) {
+        return DateParsingServiceClient.parse(date, languages, timezone, usage);
     }
 
     @Override
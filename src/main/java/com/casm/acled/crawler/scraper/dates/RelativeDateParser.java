@@ -0,0 +1,175 @@
+package com.casm.acled.crawler.scraper.dates;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process parsing of the relative date expressions ("3 hours ago", "hace 2 días", "prije 5 minuta",
+ * "yesterday", "4h") that NaturalLanguageDateParser used to send to the python dateparser service for
+ * every article.
+ *
+ * Like that service, results are the current time in the source's timezone shifted by the expression,
+ * e.g. "yesterday" is exactly one day before now. Anything not recognised returns empty so the caller
+ * can fall back to the service.
+ */
+class RelativeDateParser {
+
+    private static class Language {
+        // group 1: amount (absent for "an hour ago" etc.), group 2: unit
+        private final Pattern ago;
+        private final Map<String, ChronoUnit> units;
+        // whole words meaning "n days ago"
+        private final Map<String, Integer> days;
+
+        private Language(String ago, Map<String, ChronoUnit> units, Map<String, Integer> days) {
+            this.ago = Pattern.compile(ago, Pattern.UNICODE_CASE | Pattern.CASE_INSENSITIVE);
+            this.units = units;
+            this.days = days;
+        }
+    }
+
+    private static final Language EN = new Language(
+            "(?:(\\d+)|\\ban?|\\bone)\\s*(seconds?|secs?|minutes?|mins?|hours?|hrs?|days?|weeks?|wks?|months?|years?|yrs?)\\s+ago\\b",
+            ImmutableMap.<String, ChronoUnit>builder()
+                    .put("sec", ChronoUnit.SECONDS).put("min", ChronoUnit.MINUTES)
+                    .put("hour", ChronoUnit.HOURS).put("hr", ChronoUnit.HOURS)
+                    .put("day", ChronoUnit.DAYS).put("week", ChronoUnit.WEEKS).put("wk", ChronoUnit.WEEKS)
+                    .put("month", ChronoUnit.MONTHS).put("year", ChronoUnit.YEARS).put("yr", ChronoUnit.YEARS)
+                    .build(),
+            ImmutableMap.of("today", 0, "yesterday", 1));
+
+    private static final Language ES = new Language(
+            "\\bhace\\s+(?:(\\d+)|una?)\\s+(segundos?|minutos?|horas?|d[ií]as?|semanas?|mes|meses|a[ñn]os?)\\b",
+            ImmutableMap.<String, ChronoUnit>builder()
+                    .put("seg", ChronoUnit.SECONDS).put("min", ChronoUnit.MINUTES).put("hora", ChronoUnit.HOURS)
+                    .put("d", ChronoUnit.DAYS).put("sem", ChronoUnit.WEEKS).put("mes", ChronoUnit.MONTHS)
+                    .put("a", ChronoUnit.YEARS)
+                    .build(),
+            ImmutableMap.of("hoy", 0, "ayer", 1, "anteayer", 2, "antier", 2));
+
+    private static final Language PT = new Language(
+            "\\bh[áa]\\s+(?:(\\d+)|uma?)\\s+(segundos?|minutos?|horas?|dias?|semanas?|m[eê]s|meses|anos?)\\b",
+            ImmutableMap.<String, ChronoUnit>builder()
+                    .put("seg", ChronoUnit.SECONDS).put("min", ChronoUnit.MINUTES).put("hora", ChronoUnit.HOURS)
+                    .put("d", ChronoUnit.DAYS).put("sem", ChronoUnit.WEEKS).put("m", ChronoUnit.MONTHS)
+                    .put("a", ChronoUnit.YEARS)
+                    .build(),
+            ImmutableMap.of("hoje", 0, "ontem", 1, "anteontem", 2));
+
+    private static final Language FR = new Language(
+            "\\bil\\s+y\\s+a\\s+(?:(\\d+)|une?)\\s+(secondes?|minutes?|heures?|jours?|semaines?|mois|ans?|ann[ée]es?)\\b",
+            ImmutableMap.<String, ChronoUnit>builder()
+                    .put("sec", ChronoUnit.SECONDS).put("min", ChronoUnit.MINUTES).put("heure", ChronoUnit.HOURS)
+                    .put("jour", ChronoUnit.DAYS).put("sem", ChronoUnit.WEEKS).put("mois", ChronoUnit.MONTHS)
+                    .put("an", ChronoUnit.YEARS)
+                    .build(),
+            ImmutableMap.of("aujourd'hui", 0, "hier", 1, "avant-hier", 2));
+
+    // Bosnian, Croatian and Serbian (latin) share the vocabulary we see; "pre" is the ekavian "prije".
+    private static final Language BCS = new Language(
+            "\\b(?:prije|pre)\\s+(?:(\\d+)|jedan|jednu|jednog)?\\s*(sekund\\w*|minut\\w*|sat\\w*|dan\\w*|sedmic\\w*|tjed\\w*|nedelj\\w*|nedjelj\\w*|mjesec\\w*|mesec\\w*|godin\\w*)",
+            ImmutableMap.<String, ChronoUnit>builder()
+                    .put("sek", ChronoUnit.SECONDS).put("min", ChronoUnit.MINUTES).put("sat", ChronoUnit.HOURS)
+                    .put("dan", ChronoUnit.DAYS).put("sed", ChronoUnit.WEEKS).put("tje", ChronoUnit.WEEKS)
+                    .put("ned", ChronoUnit.WEEKS).put("mje", ChronoUnit.MONTHS).put("mes", ChronoUnit.MONTHS)
+                    .put("god", ChronoUnit.YEARS)
+                    .build(),
+            ImmutableMap.<String, Integer>builder()
+                    .put("danas", 0).put("jučer", 1).put("juče", 1).put("jucer", 1).put("juce", 1)
+                    .put("prekjučer", 2).put("prekjuče", 2).put("prekjucer", 2)
+                    .build());
+
+    private static final Map<String, Language> LANGUAGES = ImmutableMap.<String, Language>builder()
+            .put("en", EN)
+            .put("es", ES)
+            .put("pt", PT)
+            .put("fr", FR)
+            .put("bs", BCS)
+            .put("hr", BCS)
+            .put("sr", BCS)
+            .put("sh", BCS)
+            .build();
+
+    // "4h", "15min", "2d" as used by some sites, language independent
+    private static final Pattern COMPACT = Pattern.compile("^(\\d+)\\s*(s|sec|m|min|h|hr|d|w)$");
+    private static final Map<String, ChronoUnit> COMPACT_UNITS = ImmutableMap.<String, ChronoUnit>builder()
+            .put("s", ChronoUnit.SECONDS).put("sec", ChronoUnit.SECONDS)
+            .put("m", ChronoUnit.MINUTES).put("min", ChronoUnit.MINUTES)
+            .put("h", ChronoUnit.HOURS).put("hr", ChronoUnit.HOURS)
+            .put("d", ChronoUnit.DAYS).put("w", ChronoUnit.WEEKS)
+            .build();
+
+    private static final Pattern WHITESPACE = Pattern.compile("(\\h+|\\s+)");
+
+    private RelativeDateParser() {}
+
+    /**
+     * @param languages ISO 639 language codes to try, in order; if none are supported all are tried.
+     */
+    static Optional<LocalDateTime> parse(String text, List<String> languages, ZoneId zone, Clock clock) {
+        String normalised = WHITESPACE.matcher(text).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+        LocalDateTime now = LocalDateTime.now(clock.withZone(zone));
+
+        Matcher compact = COMPACT.matcher(normalised);
+        if(compact.matches()) {
+            return Optional.of(now.minus(Long.parseLong(compact.group(1)), COMPACT_UNITS.get(compact.group(2))));
+        }
+
+        for(Language language : languages(languages)) {
+            Integer days = language.days.get(normalised);
+            if(days != null) {
+                return Optional.of(now.minusDays(days));
+            }
+
+            Matcher m = language.ago.matcher(normalised);
+            if(m.find()) {
+                long amount = m.group(1) == null ? 1 : Long.parseLong(m.group(1));
+                ChronoUnit unit = unit(language, m.group(2));
+                if(unit != null) {
+                    return Optional.of(now.minus(amount, unit));
+                }
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private static List<Language> languages(List<String> codes) {
+        List<Language> languages = new ArrayList<>();
+        for(String code : codes) {
+            Language language = LANGUAGES.get(code);
+            if(language != null && !languages.contains(language)) {
+                languages.add(language);
+            }
+        }
+        if(languages.isEmpty()) {
+            return ImmutableList.of(EN, ES, PT, FR, BCS);
+        }
+        return languages;
+    }
+
+    // Units are matched on the longest known prefix of the word, which covers plurals and inflections.
+    private static ChronoUnit unit(Language language, String word) {
+        ChronoUnit unit = null;
+        int longest = -1;
+        for(Map.Entry<String, ChronoUnit> entry : language.units.entrySet()) {
+            if(word.startsWith(entry.getKey()) && entry.getKey().length() > longest) {
+                unit = entry.getValue();
+                longest = entry.getKey().length();
+            }
+        }
+        return unit;
+    }
+}
@@ -0,0 +1,193 @@
+package com.casm.acled.crawler.scraper.keywords;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cheap rejection stage in front of the full Lucene match.
+ *
+ * From a parsed query we derive a set of terms at least one of which must occur in any matching text:
+ * a term query needs its term, a phrase any of its terms, a boolean query the terms of one of its
+ * required clauses or, with no required clauses, the union over its optional ones. Prohibited clauses
+ * never help a document match, so they are ignored. Where no such set can be derived (wildcards, ranges,
+ * etc.) the prefilter lets everything through.
+ *
+ * Texts are tokenized with the same analyzer the MemoryIndex would use, so a rejection here means
+ * LuceneMatcher would not have matched either.
+ */
+public class KeywordPrefilter {
+
+    private static final AtomicLong CHECKED = new AtomicLong();
+    private static final AtomicLong REJECTED = new AtomicLong();
+
+    // null when the query can't be prefiltered
+    private final Set<String> terms;
+
+    private KeywordPrefilter(Set<String> terms) {
+        this.terms = terms;
+    }
+
+    public static KeywordPrefilter of(Query query, String field) {
+        return new KeywordPrefilter(required(query, field));
+    }
+
+    public boolean isActive() {
+        return terms != null;
+    }
+
+    /**
+     * @param tokens the analyzed tokens of the text, see {@link #tokens(String, Analyzer)}
+     */
+    public boolean mayMatch(Set<String> tokens) {
+        if(terms == null) {
+            return true;
+        }
+        boolean may = false;
+        for(String term : terms) {
+            if(tokens.contains(term)) {
+                may = true;
+                break;
+            }
+        }
+        return count(may);
+    }
+
+    public boolean mayMatch(String text, Analyzer analyzer) {
+        if(terms == null) {
+            return true;
+        }
+        boolean may = false;
+        try (TokenStream stream = analyzer.tokenStream(LuceneMatcher.FIELD, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while(stream.incrementToken()) {
+                if(terms.contains(term.toString())) {
+                    may = true;
+                    break;
+                }
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return count(may);
+    }
+
+    public static Set<String> tokens(String text, Analyzer analyzer) {
+        Set<String> tokens = new HashSet<>();
+        try (TokenStream stream = analyzer.tokenStream(LuceneMatcher.FIELD, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while(stream.incrementToken()) {
+                tokens.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return tokens;
+    }
+
+    private static boolean count(boolean may) {
+        CHECKED.incrementAndGet();
+        if(!may) {
+            REJECTED.incrementAndGet();
+        }
+        return may;
+    }
+
+    public static long checked() {
+        return CHECKED.get();
+    }
+
+    public static long rejected() {
+        return REJECTED.get();
+    }
+
+    public static double rejectionRate() {
+        long checked = CHECKED.get();
+        return checked == 0 ? 0.0 : (double) REJECTED.get() / checked;
+    }
+
+    private static Set<String> required(Query query, String field) {
+
+        if(query instanceof TermQuery) {
+            return terms(field, ((TermQuery) query).getTerm());
+
+        } else if(query instanceof PhraseQuery) {
+            return terms(field, ((PhraseQuery) query).getTerms());
+
+        } else if(query instanceof SynonymQuery) {
+            return terms(field, ((SynonymQuery) query).getTerms().toArray(new Term[]{}));
+
+        } else if(query instanceof MultiPhraseQuery) {
+            Set<String> terms = new HashSet<>();
+            for(Term[] position : ((MultiPhraseQuery) query).getTermArrays()) {
+                Set<String> positionTerms = terms(field, position);
+                if(positionTerms == null) {
+                    return null;
+                }
+                terms.addAll(positionTerms);
+            }
+            return terms.isEmpty() ? null : terms;
+
+        } else if(query instanceof BoostQuery) {
+            return required(((BoostQuery) query).getQuery(), field);
+
+        } else if(query instanceof ConstantScoreQuery) {
+            return required(((ConstantScoreQuery) query).getQuery(), field);
+
+        } else if(query instanceof BooleanQuery) {
+            BooleanQuery bq = (BooleanQuery) query;
+
+            Set<String> should = new HashSet<>();
+            boolean anyShould = false;
+            boolean shouldUnknown = false;
+
+            for(BooleanClause clause : bq.clauses()) {
+                if(clause.isRequired()) {
+                    Set<String> must = required(clause.getQuery(), field);
+                    if(must != null) {
+                        return must;
+                    }
+                } else if(clause.getOccur() == BooleanClause.Occur.SHOULD) {
+                    anyShould = true;
+                    Set<String> terms = required(clause.getQuery(), field);
+                    if(terms == null) {
+                        shouldUnknown = true;
+                    } else {
+                        should.addAll(terms);
+                    }
+                }
+            }
+
+            // Optional clauses only constrain the match when there are no required ones.
+            boolean anyRequired = bq.clauses().stream().anyMatch(BooleanClause::isRequired);
+            if(anyRequired || !anyShould || shouldUnknown) {
+                return null;
+            }
+            return should;
+        }
+
+        return null;
+    }
+
+    private static Set<String> terms(String field, Term... terms) {
+        Set<String> text = new HashSet<>();
+        for(Term term : terms) {
+            if(!field.equals(term.field())) {
+                return null;
+            }
+            text.add(term.text());
+        }
+        return text.isEmpty() ? null : text;
+    }
+}
@@ -18,6 +18,8 @@ public class KeywordTagger implements IDocumentTagger{
 
     private final LuceneMatcher matcher;
 
+    private boolean lazyHighlights;
+
     public KeywordTagger(String field, SourceList sourceList) {
         this(field, sourceList.get(SourceList.KEYWORDS), sourceList.get(SourceList.LIST_NAME));
     }
@@ -34,6 +36,10 @@ public class KeywordTagger implements IDocumentTagger{
         }
     }
 
+    public void setLazyHighlights(boolean lazyHighlights) {
+        this.lazyHighlights = lazyHighlights;
+    }
+
     @Override
     public void tagDocument(String s, InputStream inputStream, ImporterMetadata importerMetadata, boolean b) throws ImporterHandlerException {
 
@@ -51,7 +57,9 @@ public class KeywordTagger implements IDocumentTagger{
         else if(matcher.isMatched(text)) {
 
             importerMetadata.addString(ScraperFields.KEYWORD_PASSED, name);
-            importerMetadata.addString(ScraperFields.KEYWORD_HIGHLIGHT, matcher.getHighlights(text));
+            importerMetadata.addString(ScraperFields.KEYWORD_HIGHLIGHT, lazyHighlights ?
+                    matcher.match(text).encode() :
+                    matcher.highlight(text));
 
         }
     }
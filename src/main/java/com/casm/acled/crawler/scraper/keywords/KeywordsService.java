@@ -1,6 +1,8 @@
 package com.casm.acled.crawler.scraper.keywords;
 
+import com.casm.acled.crawler.management.ConfigService;
 import com.casm.acled.crawler.reporting.Reporter;
+import com.casm.acled.crawler.scraper.ArticlePages;
 import com.casm.acled.crawler.scraper.ScraperService;
 import com.casm.acled.dao.entities.*;
 import com.casm.acled.entities.article.Article;
@@ -8,6 +10,7 @@ import com.casm.acled.entities.desk.Desk;
 import com.casm.acled.entities.source.Source;
 import com.casm.acled.entities.sourcelist.SourceList;
 import com.casm.acled.entities.sourcesourcelist.SourceSourceList;
+import com.google.common.collect.ImmutableList;
 import com.opencsv.CSVReader;
 import net.sf.extjwnl.data.IndexWord;
 import net.sf.extjwnl.data.IndexWordSet;
@@ -44,6 +47,12 @@ public class KeywordsService {
     @Autowired
     private ScraperService scraperService;
 
+    @Autowired
+    private ArticlePages articlePages;
+
+    @Autowired
+    private ConfigService configService;
+
     public boolean checkURL(SourceList sourceList, Source source, String url) {
 
         String article = scraperService.getText(source, url);
@@ -180,6 +189,52 @@ public class KeywordsService {
         return matched;
     }
 
+    /**
+     * The article's keyword highlights, building them from the stored text if the crawl only recorded
+     * the matched offsets (CrawlArgs.Flags.LAZY_HIGHLIGHTS).
+     */
+    public String getHighlights(Article article) {
+        String highlight = article.get(Article.SCRAPE_KEYWORD_HIGHLIGHT);
+        if(LuceneMatcher.Match.isEncoded(highlight)) {
+            String text = article.get(Article.TEXT);
+            return LuceneMatcher.highlight(text == null ? "" : text, LuceneMatcher.Match.decode(highlight));
+        }
+        return highlight;
+    }
+
+    /**
+     * Replace recorded keyword offsets with built highlights for all of a source's articles, a page
+     * (crawler.rescrapePageSize) at a time, writing back only the highlight field.
+     * @return the number of articles updated
+     */
+    public int buildHighlights(Source source) {
+        int updated = 0;
+
+        ArticlePages.Pages pages = articlePages.pages(source, 0, configService.getRescrapePageSize());
+        while(pages.hasNext()) {
+            List<Article> built = new ArrayList<>();
+            for(Article article : pages.next()) {
+                if(LuceneMatcher.Match.isEncoded(article.get(Article.SCRAPE_KEYWORD_HIGHLIGHT))) {
+                    built.add(article.put(Article.SCRAPE_KEYWORD_HIGHLIGHT, getHighlights(article)));
+                }
+            }
+
+            if(!built.isEmpty()) {
+                pages.write(built, ImmutableList.of(Article.SCRAPE_KEYWORD_HIGHLIGHT));
+            }
+            updated += built.size();
+        }
+
+        return updated;
+    }
+
+    public String keywordStats() {
+        return String.format("parsed query cache: %d entries, %d hits, %d misses%n" +
+                        "keyword prefilter: %d checked, %d rejected (%.1f%%)",
+                QueryCache.size(), QueryCache.hits(), QueryCache.misses(),
+                KeywordPrefilter.checked(), KeywordPrefilter.rejected(), KeywordPrefilter.rejectionRate() * 100);
+    }
+
     public SourceList assignKeywords(SourceList sourceList, String query) {
 
         sourceList = sourceList.put(SourceList.KEYWORDS, query);
@@ -2,6 +2,8 @@ package com.casm.acled.crawler.scraper.keywords;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.core.SimpleAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
@@ -21,58 +23,116 @@ import java.util.Map;
 
 public class LuceneMatcher {
 
-    public class Match {
-        List<String> terms = new ArrayList<>();
-        List<int[]> offsets = new ArrayList<>();
+    /**
+     * The query terms found in a text and their character offsets, recorded instead of highlight
+     * fragments when highlights are built lazily. Stored in the keyword highlight field in its
+     * encoded form, "terms:term@start-end;term@start-end...", and turned into fragments later by
+     * {@link #highlight(String, Match)}.
+     */
+    public static class Match {
+
+        public static final String PREFIX = "terms:";
+
+        final List<String> terms = new ArrayList<>();
+        final List<int[]> offsets = new ArrayList<>();
+
+        public List<String> getTerms() {
+            return terms;
+        }
+
+        public List<int[]> getOffsets() {
+            return offsets;
+        }
+
+        public String encode() {
+            StringBuilder sb = new StringBuilder(PREFIX);
+            for(int i = 0; i < terms.size(); ++i) {
+                if(i > 0) {
+                    sb.append(';');
+                }
+                sb.append(terms.get(i)).append('@').append(offsets.get(i)[0]).append('-').append(offsets.get(i)[1]);
+            }
+            return sb.toString();
+        }
+
+        public static boolean isEncoded(String value) {
+            return value != null && value.startsWith(PREFIX);
+        }
+
+        public static Match decode(String value) {
+            Match match = new Match();
+            String body = value.substring(PREFIX.length());
+            if(body.isEmpty()) {
+                return match;
+            }
+            for(String entry : body.split(";")) {
+                int at = entry.lastIndexOf('@');
+                int dash = entry.lastIndexOf('-');
+                match.terms.add(entry.substring(0, at));
+                match.offsets.add(new int[]{Integer.parseInt(entry.substring(at + 1, dash)), Integer.parseInt(entry.substring(dash + 1))});
+            }
+            return match;
+        }
     }
 
+    private static final int FRAGMENT_SIZE = 100;
+    private static final int MAX_FRAGMENTS = 10;
+
     private String queryConfig;
     private final Analyzer analyzer;
     private final Query query;
-    private final String FIELD = "field";
+    private final KeywordPrefilter prefilter;
+    public static final String FIELD = "field";
 
     public LuceneMatcher(String queryConfig) {
-        analyzer = new SimpleAnalyzer();
+        this(queryConfig, new SimpleAnalyzer());
+    }
 
-        QueryParser parser = new QueryParser(FIELD, analyzer);
+    public LuceneMatcher(String queryConfig, Analyzer analyzer) {
+        this.analyzer = analyzer;
+        this.queryConfig = queryConfig;
 
-        parser.createPhraseQuery(FIELD, queryConfig);
-        try {
-            query = parser.parse(queryConfig);
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
-        }
+        query = QueryCache.get(FIELD, queryConfig, analyzer);
+        prefilter = KeywordPrefilter.of(query, FIELD);
     }
 
-    public String getHighlights(String text) {
+    public Query getQuery() {
+        return query;
+    }
 
-        MemoryIndex index = new MemoryIndex();
-        index.addField(FIELD, text, analyzer);
-        float score = index.search(query);
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
 
-        try {
-//            WeightedSpanTermExtractor extractor =  new WeightedSpanTermExtractor(FIELD);
-//            Map<String,WeightedSpanTerm> terms = extractor.getWeightedSpanTerms(query, 0, analyzer.tokenStream(FIELD, text));
-//            for(WeightedSpanTerm term : terms.values()) {
-//                if (term.getWeight() > 0) {
-//                    System.out.println(term.getTerm());
-//                }
-//            }
+    public KeywordPrefilter getPrefilter() {
+        return prefilter;
+    }
 
+    /**
+     * Analyze the text once into an index that can be matched against any number of queries
+     * built with the same analyzer.
+     */
+    public static MemoryIndex index(String text, Analyzer analyzer) {
+        MemoryIndex index = new MemoryIndex();
+        index.addField(FIELD, text, analyzer);
+        return index;
+    }
 
-//        List<String> matched = new ArrayList<>();
-//        WeightedTerm[] terms = QueryTermExtractor.getTerms(query);
-//        for(WeightedTerm term : terms) {
-//            if (term.getWeight() > 0) {
-//                matched.add(term.getTerm());
-//            }
-//        }
+    public String getHighlights(String text) {
 
-            IndexSearcher searcher = index.createSearcher();
+        if(isMatched(text)) {
+            return highlight(text);
+        } else {
+            return "";
+        }
+    }
 
-            //Search the lucene documents
-            TopDocs hits = searcher.search(query, 10);
+    /**
+     * Highlighted fragments of text for this query. Assumes the text is already known to match.
+     */
+    public String highlight(String text) {
 
+        try {
             /** Highlighter Code Start ****/
 
             //Uses HTML &lt;B&gt;&lt;/B&gt; tag to highlight the searched terms
@@ -88,27 +148,20 @@ public class LuceneMatcher {
             //It breaks text up into same-size texts but does not split up spans
             Fragmenter fragmenter = new SimpleSpanFragmenter(scorer, 100);
 
-            //breaks text up into same-size fragments with no concerns over spotting sentence boundaries.
-            //Fragmenter fragmenter = new SimpleFragmenter(10);
-
             //set fragmenter to highlighter
             highlighter.setTextFragmenter(fragmenter);
 
-
             StringBuilder sb = new StringBuilder();
-            //Iterate over found results
-            for (int i = 0; i < hits.scoreDocs.length; i++)
+
+            //Create token stream
+            TokenStream stream = analyzer.tokenStream(FIELD, text);
+
+            //Get highlighted text fragments
+            String[] frags = highlighter.getBestFragments(stream, text, 10);
+            for (String frag : frags)
             {
-                //Create token stream
-                TokenStream stream = analyzer.tokenStream(FIELD, text);
-
-                //Get highlighted text fragments
-                String[] frags = highlighter.getBestFragments(stream, text, 10);
-                for (String frag : frags)
-                {
-                    sb.append("</br>");
-                    sb.append(frag);
-                }
+                sb.append("</br>");
+                sb.append(frag);
             }
 
             return sb.toString();
@@ -119,11 +172,91 @@ public class LuceneMatcher {
 
     public boolean isMatched(String text) {
 
-        MemoryIndex index = new MemoryIndex();
-        index.addField(FIELD, text, analyzer);
-        float score = index.search(query);
+        // Most articles fail the keywords; skip building the index when no required term occurs.
+        if(!prefilter.mayMatch(text, analyzer)) {
+            return false;
+        }
+
+        return isMatched(index(text, analyzer));
+    }
+
+    public boolean isMatched(MemoryIndex index) {
 
+        float score = index.search(query);
 
         return score > 0.0f;
     }
+
+    /**
+     * Record where the text has the tokens highlight() would mark, without building fragments; use when
+     * the text is already known to match. The tokens are scored by the Highlighter's own QueryScorer, so
+     * phrase terms only count where the whole phrase occurs, prohibited terms never do, and the text is
+     * read as far as the Highlighter would read it.
+     */
+    public Match match(String text) {
+        Match match = new Match();
+        QueryScorer scorer = new QueryScorer(query);
+        scorer.setMaxDocCharsToAnalyze(Highlighter.DEFAULT_MAX_CHARS_TO_ANALYZE);
+        try (TokenStream tokens = analyzer.tokenStream(FIELD, text)) {
+            CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offset = tokens.addAttribute(OffsetAttribute.class);
+            // for phrases the scorer reads the tokens once up front, and hands back a stream replaying them
+            TokenStream scored = scorer.init(tokens);
+            TokenStream stream = scored == null ? tokens : scored;
+            scorer.startFragment(null);
+            stream.reset();
+            while(stream.incrementToken() && offset.startOffset() < Highlighter.DEFAULT_MAX_CHARS_TO_ANALYZE) {
+                if(scorer.getTokenScore() > 0) {
+                    match.terms.add(term.toString());
+                    match.offsets.add(new int[]{offset.startOffset(), offset.endOffset()});
+                }
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return match;
+    }
+
+    /**
+     * Build highlight fragments from a recorded Match, in the same "</br>fragment" form as
+     * getHighlights, with matched terms wrapped in &lt;B&gt;&lt;/B&gt;. Fragments are runs of matches
+     * within FRAGMENT_SIZE characters of each other, padded out with surrounding text.
+     */
+    public static String highlight(String text, Match match) {
+        StringBuilder sb = new StringBuilder();
+        List<int[]> offsets = match.offsets;
+
+        int i = 0;
+        int fragments = 0;
+        while(i < offsets.size() && fragments < MAX_FRAGMENTS) {
+            int j = i;
+            while(j + 1 < offsets.size() && offsets.get(j + 1)[1] - offsets.get(i)[0] <= FRAGMENT_SIZE) {
+                ++j;
+            }
+
+            int span = offsets.get(j)[1] - offsets.get(i)[0];
+            int pad = Math.max(0, (FRAGMENT_SIZE - span) / 2);
+            int start = Math.max(0, offsets.get(i)[0] - pad);
+            int end = Math.min(text.length(), offsets.get(j)[1] + pad);
+
+            sb.append("</br>");
+            int pos = start;
+            for(int k = i; k <= j; ++k) {
+                int[] offset = offsets.get(k);
+                if(offset[1] > text.length()) {
+                    break;
+                }
+                sb.append(text, pos, offset[0]);
+                sb.append("<B>").append(text, offset[0], offset[1]).append("</B>");
+                pos = offset[1];
+            }
+            sb.append(text, Math.min(pos, end), end);
+
+            ++fragments;
+            i = j + 1;
+        }
+
+        return sb.toString();
+    }
 }
@@ -0,0 +1,118 @@
+package com.casm.acled.crawler.scraper.keywords;
+
+import com.casm.acled.crawler.scraper.ScraperFields;
+import com.casm.acled.entities.sourcelist.SourceList;
+import com.norconex.importer.doc.ImporterMetadata;
+import com.norconex.importer.handler.ImporterHandlerException;
+import com.norconex.importer.handler.tagger.IDocumentTagger;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.SimpleAnalyzer;
+import org.apache.lucene.index.memory.MemoryIndex;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Does the job of one KeywordTagger per source list, without analyzing the article once per list.
+ *
+ * Every list's query is parsed up front with a shared analyzer. Each document is tokenized once for
+ * the lists' KeywordPrefilters and, if any of them lets it through, indexed into a single MemoryIndex
+ * which is then searched with the remaining queries. Highlights are only generated for the lists that
+ * match. KEYWORD_PASSED and KEYWORD_HIGHLIGHT are added pairwise per list, in list order, exactly as
+ * the separate KeywordTaggers would.
+ */
+public class MultiKeywordTagger implements IDocumentTagger {
+
+    private final String field;
+    private final Analyzer analyzer;
+
+    // Parallel lists; the matcher is null when the list has no query (everything passes)
+    private final List<String> names;
+    private final List<LuceneMatcher> matchers;
+
+    private boolean lazyHighlights;
+
+    public MultiKeywordTagger(String field, List<SourceList> sourceLists) {
+        this.field = field;
+        analyzer = new SimpleAnalyzer();
+        names = new ArrayList<>();
+        matchers = new ArrayList<>();
+
+        for(SourceList sourceList : sourceLists) {
+            add(sourceList.get(SourceList.LIST_NAME), sourceList.get(SourceList.KEYWORDS));
+        }
+    }
+
+    public MultiKeywordTagger(String field, Map<String, String> queries) {
+        this.field = field;
+        analyzer = new SimpleAnalyzer();
+        names = new ArrayList<>();
+        matchers = new ArrayList<>();
+
+        for(Map.Entry<String, String> entry : queries.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Record only the matched terms and offsets (see LuceneMatcher.Match) instead of building highlight
+     * fragments during the crawl.
+     */
+    public void setLazyHighlights(boolean lazyHighlights) {
+        this.lazyHighlights = lazyHighlights;
+    }
+
+    private void add(String name, String query) {
+        names.add(name);
+        matchers.add(query == null || query.isEmpty() ? null : new LuceneMatcher(query, analyzer));
+    }
+
+    @Override
+    public void tagDocument(String s, InputStream inputStream, ImporterMetadata importerMetadata, boolean b) throws ImporterHandlerException {
+
+        String value =  importerMetadata.getString(field);
+        String text = Objects.toString(value, StringUtils.EMPTY);
+
+        Set<String> tokens = null;
+        MemoryIndex index = null;
+
+        for(int i = 0; i < names.size(); ++i) {
+            String name = names.get(i);
+            LuceneMatcher matcher = matchers.get(i);
+
+            // If no query specified, then all articles match
+            if(matcher == null) {
+
+                importerMetadata.addString(ScraperFields.KEYWORD_PASSED, name);
+                importerMetadata.addString(ScraperFields.KEYWORD_HIGHLIGHT, "");
+
+                continue;
+            }
+
+            if(tokens == null) {
+                tokens = KeywordPrefilter.tokens(text, analyzer);
+            }
+
+            if(!matcher.getPrefilter().mayMatch(tokens)) {
+                continue;
+            }
+
+            if(index == null) {
+                index = LuceneMatcher.index(text, analyzer);
+            }
+
+            if(matcher.isMatched(index)) {
+
+                importerMetadata.addString(ScraperFields.KEYWORD_PASSED, name);
+                importerMetadata.addString(ScraperFields.KEYWORD_HIGHLIGHT, lazyHighlights ?
+                        matcher.match(text).encode() :
+                        matcher.highlight(text));
+            }
+        }
+    }
+}
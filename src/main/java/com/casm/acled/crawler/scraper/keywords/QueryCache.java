@@ -0,0 +1,65 @@
+package com.casm.acled.crawler.scraper.keywords;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.Query;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Process-wide cache of parsed keyword queries.
+ *
+ * Source list keyword queries can run to thousands of terms and are parsed again by every crawl,
+ * filter and keyword check that uses them. Parsed Lucene queries are immutable, so they are shared
+ * between all LuceneMatchers, keyed by the query text and the analyzer class used to parse it.
+ */
+public final class QueryCache {
+
+    private static final int MAX_SIZE = 256;
+
+    private static final Cache<String, Query> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .recordStats()
+            .build();
+
+    private QueryCache() {}
+
+    public static Query get(String field, String queryConfig, Analyzer analyzer) {
+        String key = analyzer.getClass().getName() + "|" + field + "|" + queryConfig;
+        try {
+            return CACHE.get(key, () -> parse(field, queryConfig, analyzer));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static Query parse(String field, String queryConfig, Analyzer analyzer) throws ParseException {
+        QueryParser parser = new QueryParser(field, analyzer);
+        return parser.parse(queryConfig);
+    }
+
+    public static long hits() {
+        return CACHE.stats().hitCount();
+    }
+
+    public static long misses() {
+        return CACHE.stats().missCount();
+    }
+
+    public static long size() {
+        return CACHE.size();
+    }
+
+    public static CacheStats stats() {
+        return CACHE.stats();
+    }
+
+    public static void clear() {
+        CACHE.invalidateAll();
+    }
+}
@@ -0,0 +1,106 @@
+package com.casm.acled.crawler.spring;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs a crawl task for each of a number of items, at most parallelism at a time.
+ *
+ * Each task runs on its own thread in a ThreadGroup named by the group function (the source id for crawls),
+ * which is what CustomLoggerRepository uses to route a crawl's logging, including from the Norconex threads
+ * it starts. A task that fails is recorded and doesn't affect the others.
+ */
+public class CrawlScheduler {
+
+    protected static final Logger logger = LoggerFactory.getLogger(CrawlScheduler.class);
+
+    private final int parallelism;
+
+    public CrawlScheduler(int parallelism) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Run the task for every item and wait for them all to finish.
+     *
+     * @return the failures, by item, in the order the items were given.
+     */
+    public <T> Map<T, Throwable> run(Collection<T> items, Function<T, String> group, Consumer<T> task) {
+
+        AtomicInteger n = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, items.size())), r -> {
+            Thread thread = new Thread(r, "crawl-scheduler-" + n.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Map<T, Future<?>> futures = new LinkedHashMap<>();
+        for(T item : items) {
+            futures.put(item, executor.submit(() -> runInGroup(group.apply(item), () -> task.accept(item))));
+        }
+        executor.shutdown();
+
+        Map<T, Throwable> failures = new LinkedHashMap<>();
+        try {
+            for(Map.Entry<T, Future<?>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() instanceof RuntimeException && e.getCause().getCause() != null
+                            ? e.getCause().getCause()
+                            : e.getCause();
+                    logger.error("crawl " + group.apply(entry.getKey()) + " failed", cause);
+                    failures.put(entry.getKey(), cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        return failures;
+    }
+
+    /**
+     * Run the task on a new thread in its own ThreadGroup and wait for it, rethrowing anything it throws.
+     */
+    public static void runInGroup(String group, Runnable task) {
+
+        ThreadGroup tg = new ThreadGroup(group);
+
+        Thread thread = new Thread(tg, task);
+
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+
+        thread.setUncaughtExceptionHandler((Thread th, Throwable ex)->{
+            thrown.set(ex);
+        });
+
+        thread.start();
+
+        try {
+            thread.join();
+        } catch (InterruptedException e){
+            thread.interrupt();
+            throw new RuntimeException(e);
+        }
+        if(thrown.get()!=null) {
+            throw new RuntimeException(thrown.get());
+        }
+    }
+}
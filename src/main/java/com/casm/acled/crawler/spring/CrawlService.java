@@ -1,12 +1,14 @@
 package com.casm.acled.crawler.spring;
 
-import bithazard.sitemap.parser.SitemapParser;
-import bithazard.sitemap.parser.model.InvalidSitemapUrlException;
-import bithazard.sitemap.parser.model.UrlConnectionException;
 import com.casm.acled.crawler.Crawl;
 import com.casm.acled.crawler.management.*;
 import com.casm.acled.crawler.scraper.ACLEDCommitter;
 import com.casm.acled.crawler.scraper.ACLEDImporter;
+import com.casm.acled.crawler.scraper.ArticleCountService;
+import com.casm.acled.crawler.scraper.ArticleWriter;
+import com.casm.acled.crawler.scraper.RawHtmlStore;
+import com.casm.acled.crawler.reporting.Event;
+import com.casm.acled.crawler.reporting.Report;
 import com.casm.acled.crawler.reporting.Reporter;
 import com.casm.acled.crawler.util.CustomLoggerRepository;
 import com.casm.acled.crawler.util.Util;
@@ -24,35 +26,29 @@ import com.norconex.collector.http.sitemap.ISitemapResolver;
 import com.norconex.collector.http.sitemap.SitemapURLAdder;
 import com.norconex.collector.http.sitemap.impl.StandardSitemapResolverFactory;
 import org.apache.http.client.HttpClient;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.spi.DefaultRepositorySelector;
 import org.apache.log4j.spi.LoggerRepository;
 import org.apache.log4j.spi.RootLogger;
-import org.glassfish.jersey.client.ClientProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import javax.ws.rs.ProcessingException;
-import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.Invocation;
-import javax.ws.rs.client.WebTarget;
-import javax.ws.rs.core.MediaType;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -86,6 +82,25 @@ public class CrawlService {
     @Autowired
     private ConfigService configService;
 
+    @Autowired
+    private ArticleCountService articleCountService;
+
+    @Autowired
+    private RawHtmlStore rawHtmlStore;
+
+    @Autowired
+    private SharedHttpClient sharedHttpClient;
+
+    private UrlChecker urlChecker;
+
+    private DiscoveryCache discoveryCache;
+
+    private static final String DISCOVERY_CACHE = "discovery-cache.json";
+
+    private SitemapWatermarks sitemapWatermarks;
+
+    private static final String SITEMAP_WATERMARKS = "sitemap-watermarks.json";
+
     public CrawlService() {
 //        args = argsService.get();
     }
@@ -105,7 +120,7 @@ public class CrawlService {
 
         if(maybesSourceList.isPresent() && maybeSource.isPresent()) {
 
-            ACLEDCommitter committer = new ACLEDCommitter(articleDAO, maybeSource.get(), sourceListDAO, true, true, reporter);
+            ACLEDCommitter committer = committer(maybeSource.get());
             committer.setMaxArticles(10);
 
             CrawlArgs args = argsService.get();
@@ -113,9 +128,16 @@ public class CrawlService {
             args.source = maybeSource.get();
             args.sourceLists = ImmutableList.of(maybesSourceList.get());
             args.depth = 3;
+            args.politenessMin = configService.getPolitenessMin();
+            args.politenessMax = configService.getPolitenessMax();
 
-            Crawl crawl = new Crawl(args, committer, reporter, ImmutableList.of());
-            crawl.run();
+            Crawl crawl = new Crawl(args, committer, reporter, ImmutableList.of(), discoveryCache());
+            try {
+                crawl.run();
+            } finally {
+                committer.close();
+                reporter.flush(args.source.id());
+            }
         } else {
 
             throw new RuntimeException("source or source list not found!");
@@ -140,56 +162,121 @@ public class CrawlService {
 
     public void run(CrawlArgs args) {
 
-        Source source = args.source;
+        //ThreadGroup required for logger context, see CustomLoggerRepository
+        CrawlScheduler.runInGroup(Integer.toString(args.source.id()), () -> crawl(args, null));
+    }
+
+    /**
+     * Crawl each of the sources with the rest of args, crawler.crawlParallelism at a time.
+     */
+    public Map<Integer, Throwable> runAll(CrawlArgs args, List<Source> sources) {
+        return runAll(args, sources, configService.getCrawlParallelism());
+    }
 
-        int sourceId = source.id();
+    /**
+     * Crawl each of the sources with the rest of args, parallelism at a time, with HTTP fetches across
+     * all of them capped at crawler.crawlMaxConnections. A source that fails is reported and skipped.
+     *
+     * @return the failures, by source id.
+     */
+    public Map<Integer, Throwable> runAll(CrawlArgs args, List<Source> sources, int parallelism) {
 
-        //ThreadGroup required for logger context, see CustomLoggerRepository
-        ThreadGroup tg = new ThreadGroup(Integer.toString(sourceId));
+        HttpConcurrencyLimit.setLimit(configService.getCrawlMaxConnections());
 
-        Thread thread = new Thread(tg, () -> {
+        // Discover every source's sitemaps up front, concurrently, rather than one at a time as crawls start
+        Map<Integer, List<String>> sitemaps = getSitemaps(sources);
 
-            configureLogging(args.workingDir, Crawl.id(args.source));
+        CrawlScheduler scheduler = new CrawlScheduler(parallelism);
 
-//            ACLEDImporter importer = new ACLEDImporter(articleDAO, source, sourceListDAO, true);
-            ACLEDCommitter committer = new ACLEDCommitter(articleDAO, source, sourceListDAO, true, true, reporter);
+        Map<Source, Throwable> failed = scheduler.run(sources,
+                source -> Integer.toString(source.id()),
+                source -> crawl(args.forSource(source), sitemaps.get(source.id())));
 
-            List<String> sitemaps = getSitemaps(source);
+        Map<Integer, Throwable> failures = new LinkedHashMap<>();
+        for(Map.Entry<Source, Throwable> entry : failed.entrySet()) {
+            Source source = entry.getKey();
+            failures.put(source.id(), entry.getValue());
+            reporter.report(Report.of(Event.ERROR, source.id()).type(Source.class).message("crawl failed: %s", entry.getValue()));
+        }
+        reporter.flush();
 
-            Crawl crawl = new Crawl(args, committer, reporter, sitemaps);
+        logger.info("crawled {} sources, {} failed", sources.size(), failures.size());
 
-            crawl.run();
-        });
+        return failures;
+    }
+
+    /**
+     * @param sitemaps already discovered for the source, or null to discover them now.
+     */
+    private void crawl(CrawlArgs args, List<String> sitemaps) {
 
-        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Source source = args.source;
 
-        thread.setUncaughtExceptionHandler((Thread th, Throwable ex)->{
-            thrown.set(ex);
-        });
+        configureLogging(args.workingDir, Crawl.id(source));
+
+//            ACLEDImporter importer = new ACLEDImporter(articleDAO, source, sourceListDAO, true);
+        ACLEDCommitter committer = committer(source);
+
+        if(sitemaps == null) {
+            sitemaps = getSitemaps(source);
+        }
+
+        // skip the child sitemaps that haven't changed since the last crawl that completed
+        SitemapWatermarks.Expansion expansion = sitemapWatermarks().expand(source.id(), sitemaps, args.from,
+                args.flagSet != null && args.flagSet.contains(CrawlArgs.Flags.FULL_SITEMAPS));
+
+        args.politenessMin = configService.getPolitenessMin();
+        args.politenessMax = configService.getPolitenessMax();
 
-        thread.start();
+        Crawl crawl = new Crawl(args, committer, reporter, expansion.getSitemaps(), discoveryCache());
 
         try {
-            thread.join();
-        } catch (InterruptedException e){
-            throw new RuntimeException(e);
+            crawl.run();
+        } finally {
+            committer.close();
+            reporter.flush(source.id());
+        }
+
+        // articles that failed to fetch may only be listed in child sitemaps the next crawl would skip
+        long failed = crawl.failedFetches();
+        if(failed == 0) {
+            sitemapWatermarks().advance(expansion);
+        } else {
+            logger.info("{}: {} fetches failed, sitemap watermark not advanced", Crawl.id(source), failed);
+        }
+    }
+
+    private ACLEDCommitter committer(Source source) {
+        ACLEDCommitter committer = new ACLEDCommitter(articleDAO, source, sourceListDAO, true, true, reporter);
+        committer.setArticleCounter(articleCountService::count);
+
+        if(configService.isArticleWriteBehind()) {
+            committer.setArticleWriter(new ArticleWriter(articleDAO,
+                    configService.getArticleBatchSize(),
+                    configService.getArticleFlushInterval(),
+                    configService.getArticleQueueCapacity()));
         }
-        if(thrown.get()!=null) {
-            throw new RuntimeException(thrown.get());
+
+        if(configService.isRawHtmlStore()) {
+            committer.setRawHtmlStore(rawHtmlStore);
         }
 
+        return committer;
     }
 
     private void configureLogging(Path workingDir, String id){
 
-        try {
-            Object guard = new Object();
+        // Parallel crawls would otherwise race to install the repository
+        synchronized (CustomLoggerRepository.class) {
+            try {
+                Object guard = new Object();
 
-            LoggerRepository rs = new CustomLoggerRepository(new RootLogger((Level) Level.DEBUG), workingDir);
-            LogManager.setRepositorySelector(new DefaultRepositorySelector(rs), guard);
-        } catch (IllegalArgumentException e) {
-            //pass already installed
-            int x = 0;
+                LoggerRepository rs = new CustomLoggerRepository(new RootLogger((Level) Level.DEBUG), workingDir);
+                LogManager.setRepositorySelector(new DefaultRepositorySelector(rs), guard);
+            } catch (IllegalArgumentException e) {
+                //pass already installed
+                int x = 0;
+            }
         }
         ThreadGroup threadGroup = Thread.currentThread().getThreadGroup();
         String name = threadGroup.getName();
@@ -213,7 +300,7 @@ public class CrawlService {
         hcc.setWorkDir(Paths.get("sitemap-check").toFile());
 
         ISitemapResolver resolver = ssrf.createSitemapResolver(hcc, false);
-        HttpClient httpClient = HttpClientBuilder.create().build();
+        HttpClient httpClient = sharedHttpClient.client();
 
         final Set<String> urls = new HashSet<>();
 
@@ -239,22 +326,13 @@ public class CrawlService {
     }
 
     public Map<String,String> getRobots(String url) {
-        Client client = ClientBuilder.newClient();
-
-        WebTarget target = client.target(url).path("robots.txt");
-        target.property(ClientProperties.FOLLOW_REDIRECTS, Boolean.TRUE);
+        String robots = url + (url.endsWith("/") ? "" : "/") + "robots.txt";
 
-        logger.info(url+"/robots.txt");
-
-        try {
+        logger.info(robots);
 
-            Invocation.Builder invocationBuilder = target.request(MediaType.TEXT_PLAIN);
-            String response = invocationBuilder.get(String.class);
-            return parseRobots(response);
-        } catch (ProcessingException | WebApplicationException e) {
-            logger.warn(e.getMessage());
-            return new HashMap<>();
-        }
+        return sharedHttpClient.getString(robots)
+                .map(this::parseRobots)
+                .orElseGet(HashMap::new);
     }
 
     public Map<String,String> parseRobots(String raw) {
@@ -281,15 +359,44 @@ public class CrawlService {
         Map<String, List<String>> sourceListSitemaps = new HashMap<>();
 
         List<Source> sources = sourceDAO.byList(sourceList);
+        Map<Integer, List<String>> sitemaps = getSitemaps(sources);
         for(Source source : sources) {
             String name = source.get(Source.STANDARD_NAME);
-            List<String> sitemaps = getSitemaps(source);
-            sourceListSitemaps.put(name, sitemaps);
+            sourceListSitemaps.put(name, sitemaps.getOrDefault(source.id(), ImmutableList.of()));
         }
 
         return sourceListSitemaps;
     }
 
+    /**
+     * Discover the sitemaps of all the sources concurrently.
+     *
+     * @return the contactable sitemaps, by source id. Sources whose discovery failed are left out.
+     */
+    public Map<Integer, List<String>> getSitemaps(Collection<Source> sources) {
+
+        Map<Integer, CompletableFuture<List<String>>> discoveries = new LinkedHashMap<>();
+        for(Source source : sources) {
+            try {
+                discoveries.put(source.id(), discoverSitemaps(source));
+            } catch (RuntimeException e) {
+                logger.warn("sitemap discovery failed for source " + source.id(), e);
+            }
+        }
+
+        Map<Integer, List<String>> sitemaps = new LinkedHashMap<>();
+        for(Map.Entry<Integer, CompletableFuture<List<String>>> entry : discoveries.entrySet()) {
+            try {
+                sitemaps.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException e) {
+                logger.warn("sitemap discovery failed for source " + entry.getKey(), e.getCause());
+            }
+        }
+        discoveryCache().save();
+
+        return sitemaps;
+    }
+
 
     public static List<String> STANDARD_SITEMAP_LOCS = ImmutableList.of(
             "sitemap.xml",
@@ -299,28 +406,11 @@ public class CrawlService {
 
     private List<String> checkStandardLocs(String url) {
 
-        Client client = ClientBuilder.newClient();
-
-        List<String> sitemaps = new ArrayList<>();
-
-        for(String loc : STANDARD_SITEMAP_LOCS) {
-
-            WebTarget target = client.target(url).path(loc);
-            target.property(ClientProperties.FOLLOW_REDIRECTS, Boolean.TRUE);
-            try {
-                Invocation.Builder invocationBuilder = target.request(MediaType.APPLICATION_XML);
-
-                invocationBuilder.get(String.class);
-
-                logger.info(url+"/"+loc);
-
-                sitemaps.add(url+"/"+loc);
-
-            } catch (ProcessingException | WebApplicationException e) {
+        List<String> sitemaps = urlChecker().checkAll(STANDARD_SITEMAP_LOCS.stream()
+                .map(loc -> url + "/" + loc)
+                .collect(Collectors.toList()));
 
-                logger.warn(url+"/"+loc + " : " + e.getMessage());
-            }
-        }
+        sitemaps.forEach(logger::info);
 
         return sitemaps;
     }
@@ -331,7 +421,7 @@ public class CrawlService {
 
         StandardRobotsTxtProvider srtp  = new StandardRobotsTxtProvider();
 
-        HttpClient httpClient = HttpClientBuilder.create().build();
+        HttpClient httpClient = sharedHttpClient.client();
 
         String userAgent = configService.getUserAgent();
 
@@ -346,86 +436,63 @@ public class CrawlService {
      * TODO(andy) how do we use STANDARD_SITEMAP_LOCS - won't this mess with "hasSiteMaps()"?
      */
     public List<String> getSitemaps(Source source) {
-
-        if(source.isTrue(Source.CRAWL_DISABLE_SITEMAPS)) {
-            return ImmutableList.of();
+        try {
+            return discoverSitemaps(source).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        } finally {
+            discoveryCache().save();
         }
+    }
 
-        String url = source.get(Source.LINK);
-
-        url = Util.ensureHTTP(url, false);
-
-        url = followRedirects(url);
+    /**
+     * Resolve the source's redirects, read sitemap locations from its robots.txt, add any configured ones
+     * (or the standard ones if there are none) and keep those that respond. Only the requests block, and
+     * they run on the UrlChecker's pool, so many sources can be discovered at once. Everything goes through
+     * the DiscoveryCache, so recently discovered hosts make no requests.
+     */
+    public CompletableFuture<List<String>> discoverSitemaps(Source source) {
 
-        Set<String> sitemaps = new HashSet<>();
+        if(source.isTrue(Source.CRAWL_DISABLE_SITEMAPS)) {
+            return CompletableFuture.completedFuture(ImmutableList.of());
+        }
 
-        if(source.isFalse(Source.CRAWL_DISABLE_SITEMAP_DISCOVERY)) {
+        DiscoveryCache cache = discoveryCache();
 
-            // Attempt to discover sitemap location from robots.txt
-            SitemapParser sitemapParser = new SitemapParser();
+        String link = Util.ensureHTTP(source.get(Source.LINK), false);
 
-            String userAgent = configService.getUserAgent();
+        return cache.resolve(link).thenCompose(url -> {
 
-            sitemapParser.setUserAgent(userAgent);
-            try {
-                Set<String> sitemapLocations = sitemapParser.getSitemapLocations(url);
-                sitemaps.addAll(sitemapLocations);
-            } catch (InvalidSitemapUrlException e) {
-                logger.warn(e.getMessage(), e);
-                //pass
+            CompletableFuture<Set<String>> discovered;
+            if(source.isFalse(Source.CRAWL_DISABLE_SITEMAP_DISCOVERY)) {
+                // Attempt to discover sitemap location from robots.txt
+                discovered = cache.robots(url).thenApply(DiscoveryCache::parseSitemaps);
+            } else {
+                discovered = CompletableFuture.completedFuture(new LinkedHashSet<>());
             }
-        }
-        if(source.hasValue(Source.CRAWL_SITEMAP_LOCATIONS)) {
-            List<String> sitemapSeeds = source.get(Source.CRAWL_SITEMAP_LOCATIONS);
-            sitemaps.addAll(sitemapSeeds);
-        }
 
-        if(sitemaps.isEmpty()) {
-            // Try standard ones
-            String _url = url;
-            sitemaps.addAll(STANDARD_SITEMAP_LOCS.stream().map(s->_url+(_url.endsWith("/")?"":"/")+s).collect(Collectors.toList()));
-        }
+            return discovered.thenCompose(sitemaps -> {
+                if(source.hasValue(Source.CRAWL_SITEMAP_LOCATIONS)) {
+                    List<String> sitemapSeeds = source.get(Source.CRAWL_SITEMAP_LOCATIONS);
+                    sitemaps.addAll(sitemapSeeds);
+                }
 
-        List<String> contactableSitemaps = checkURLs(new ArrayList<>(sitemaps));
+                if(sitemaps.isEmpty()) {
+                    // Try standard ones
+                    sitemaps.addAll(STANDARD_SITEMAP_LOCS.stream().map(s->url+(url.endsWith("/")?"":"/")+s).collect(Collectors.toList()));
+                }
 
-        return contactableSitemaps;
+                return cache.check(sitemaps);
+            });
+        });
     }
 
-
     public List<String> checkURLs(List<String> urls) {
-        Client client = ClientBuilder.newClient();
-
-        List<String> pass = new ArrayList<>();
-
-        for (String url : urls ) {
-            if(checkURL(url, client)) {
-                pass.add(url);
-            }
-        }
-
-        return pass;
-    }
-
-    public boolean checkURL(String url, Client client) {
-        WebTarget target = client.target(url);
-
-        try {
-            Invocation.Builder invocationBuilder = target.request();
-
-            invocationBuilder.get(String.class);
-
-        } catch (WebApplicationException e) {
-
-            return false;
-        }
-
-        return true;
+        return urlChecker().checkAll(urls);
     }
 
     public boolean checkURL(String url) {
-        Client client = ClientBuilder.newClient();
-
-        return checkURL(url, client);
+        return urlChecker().check(url);
     }
 
     public List<String> getSitemaps2(Source source) {
@@ -454,35 +521,11 @@ public class CrawlService {
         return sitemaps;
     }
 
+    /**
+     * Follow redirects one hop at a time, at most SharedHttpClient.MAX_REDIRECTS of them.
+     */
     public String followRedirects(String url)  {
-        Client client = ClientBuilder.newBuilder()
-//                .connectTimeout(10, TimeUnit.SECONDS)
-                .build();
-
-
-        WebTarget target = client.target(url);
-//        target.property(ClientProperties.FOLLOW_REDIRECTS, Boolean.TRUE);
-        try {
-            Invocation.Builder invocationBuilder = target.request();
-
-            invocationBuilder.get(String.class);
-
-        } catch ( WebApplicationException e) {
-            if(e.getResponse().getStatus() >= 300 && e.getResponse().getStatus() < 400) {
-                String redirect = (String)e.getResponse().getHeaders().getFirst("Location");
-
-                return followRedirects(redirect);
-            } else {
-
-                logger.warn(url + " : " + e.getMessage());
-                return url;
-            }
-        } catch (ProcessingException e) {
-            logger.warn(url + " : " + e.getMessage());
-            return url;
-        }
-
-        return url;
+        return sharedHttpClient.followRedirects(url);
     }
 
     /**
@@ -490,28 +533,83 @@ public class CrawlService {
      * final link.
      */
     public List<String> resolveLinks(List<String> links) {
-        List<String> resolved = new ArrayList<>();
+        List<CompletableFuture<String>> resolving = new ArrayList<>();
         for(String link : links) {
-            String rlink = resolveLink(link);
-            resolved.add(rlink);
+            resolving.add(resolveLinkAsync(link));
+        }
+
+        List<String> resolved = new ArrayList<>();
+        for(CompletableFuture<String> rlink : resolving) {
+            resolved.add(rlink.join());
         }
 
         return resolved;
     }
 
     public String resolveLink(String link) {
-        link = link.trim();
+        return resolveLinkAsync(link).join();
+    }
 
-        String plink = Util.ensureHTTP(link, false);
+    private CompletableFuture<String> resolveLinkAsync(String link) {
+        String tlink = link.trim();
 
-        String rlink = followRedirects(plink);
+        String plink = Util.ensureHTTP(tlink, false);
 
-        if(!link.equals(rlink)) {
-            logger.info("{} resolved to {}", link, rlink);
-        } else {
-            logger.info("{} passed", link);
+        return urlChecker().resolveAsync(plink).thenApply(rlink -> {
+            if(!tlink.equals(rlink)) {
+                logger.info("{} resolved to {}", tlink, rlink);
+            } else {
+                logger.info("{} passed", tlink);
+            }
+            return rlink;
+        });
+    }
+
+    /**
+     * Shared by sitemap discovery and link resolution, sized by the crawler.urlCheck* properties.
+     */
+    private synchronized UrlChecker urlChecker() {
+        if(urlChecker == null) {
+            urlChecker = new UrlChecker(sharedHttpClient.client(),
+                    configService.getUrlCheckParallelism(),
+                    configService.getUrlCheckMaxPerHost(),
+                    configService.getUrlCheckTimeout());
         }
+        return urlChecker;
+    }
 
-        return rlink;
+    /**
+     * Kept in the working directory, entries expire after crawler.discoveryCacheTtl hours.
+     */
+    public synchronized DiscoveryCache discoveryCache() {
+        if(discoveryCache == null) {
+            discoveryCache = new DiscoveryCache(configService.getWorkingDir().resolve(DISCOVERY_CACHE),
+                    urlChecker(),
+                    Duration.ofHours(configService.getDiscoveryCacheTtl()));
+        }
+        return discoveryCache;
+    }
+
+    /**
+     * Kept in the working directory.
+     */
+    public synchronized SitemapWatermarks sitemapWatermarks() {
+        if(sitemapWatermarks == null) {
+            sitemapWatermarks = new SitemapWatermarks(configService.getWorkingDir().resolve(SITEMAP_WATERMARKS), urlChecker());
+        }
+        return sitemapWatermarks;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if(discoveryCache != null) {
+            discoveryCache.save();
+            discoveryCache = null;
+        }
+        sitemapWatermarks = null;
+        if(urlChecker != null) {
+            urlChecker.close();
+            urlChecker = null;
+        }
     }
 }
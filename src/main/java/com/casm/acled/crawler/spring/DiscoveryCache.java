@@ -0,0 +1,351 @@
+package com.casm.acled.crawler.spring;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * What sitemap discovery learns about each host, kept on disk between runs: robots.txt (for its sitemap
+ * locations and crawl-delay), where links on the host redirect to, and which candidate sitemaps responded.
+ *
+ * Entries younger than the TTL are used as they are, so a site crawled more often than that makes no
+ * discovery requests at all. Older robots.txt entries are revalidated with If-None-Match/If-Modified-Since;
+ * redirects and sitemap checks are simply redone. Only a 404 or 410 is cached as the host having no
+ * robots.txt; on any other error (5xx, 403, a timeout) the previous entry is kept as it was and tried again
+ * next time, so a stale copy is used rather than nothing.
+ */
+public class DiscoveryCache {
+
+    protected static final Logger logger = LoggerFactory.getLogger(DiscoveryCache.class);
+
+    private static final String SITEMAP = "sitemap";
+    private static final String CRAWL_DELAY = "crawl-delay";
+    private static final String USER_AGENT = "user-agent";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * The robots.txt fields are only read or written holding the site's lock, as they change together.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Site {
+        public String robots;
+        public String etag;
+        public String lastModified;
+        public long robotsAt;
+        public Map<String, Redirect> redirects = new ConcurrentHashMap<>();
+        public Map<String, Check> checks = new ConcurrentHashMap<>();
+
+        synchronized Site copy() {
+            Site copy = new Site();
+            copy.robots = robots;
+            copy.etag = etag;
+            copy.lastModified = lastModified;
+            copy.robotsAt = robotsAt;
+            copy.redirects = new HashMap<>(redirects);
+            copy.checks = new HashMap<>(checks);
+            return copy;
+        }
+
+        synchronized String robotsOrEmpty() {
+            return robots == null ? "" : robots;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Redirect {
+        public String target;
+        public long at;
+
+        public Redirect() {}
+
+        Redirect(String target, long at) {
+            this.target = target;
+            this.at = at;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Check {
+        public boolean ok;
+        public long at;
+
+        public Check() {}
+
+        Check(boolean ok, long at) {
+            this.ok = ok;
+            this.at = at;
+        }
+    }
+
+    private final Path file;
+    private final UrlChecker checker;
+    private final long ttl;
+    private final Clock clock;
+
+    private final ConcurrentMap<String, Site> sites = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Site>> fetching = new ConcurrentHashMap<>();
+
+    public DiscoveryCache(Path file, UrlChecker checker, Duration ttl) {
+        this(file, checker, ttl, Clock.systemUTC());
+    }
+
+    DiscoveryCache(Path file, UrlChecker checker, Duration ttl, Clock clock) {
+        this.file = file;
+        this.checker = checker;
+        this.ttl = ttl.toMillis();
+        this.clock = clock;
+        load();
+    }
+
+    private void load() {
+        if(!Files.exists(file)) {
+            return;
+        }
+        try {
+            Map<String, Site> saved = MAPPER.readValue(file.toFile(), new TypeReference<Map<String, Site>>() {});
+            for(Map.Entry<String, Site> entry : saved.entrySet()) {
+                Site site = entry.getValue();
+                site.redirects = new ConcurrentHashMap<>(site.redirects);
+                site.checks = new ConcurrentHashMap<>(site.checks);
+                sites.put(entry.getKey(), site);
+            }
+        } catch (IOException e) {
+            logger.warn("ignoring unreadable discovery cache " + file, e);
+        }
+    }
+
+    /**
+     * Written to a temporary file first, so a crash mid-write leaves the previous version. Each site is copied
+     * under its lock, so a robots.txt being updated meanwhile is saved either as it was or as it is.
+     */
+    public synchronized void save() {
+        Map<String, Site> copy = new HashMap<>();
+        for(Map.Entry<String, Site> entry : sites.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copy());
+        }
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            if(file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            MAPPER.writeValue(tmp.toFile(), copy);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("couldn't save discovery cache " + file, e);
+        }
+    }
+
+    private boolean fresh(long at) {
+        return clock.millis() - at < ttl;
+    }
+
+    private Site site(String url) {
+        return sites.computeIfAbsent(host(url), h -> new Site());
+    }
+
+    private static String host(String url) {
+        String host = URI.create(url).getHost();
+        if(host == null) {
+            throw new IllegalArgumentException("no host in " + url);
+        }
+        return host.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return where the URL redirects to, or the URL itself if it can't be reached.
+     */
+    public CompletableFuture<String> resolve(String url) {
+        Site site = site(url);
+        Redirect redirect = site.redirects.get(url);
+        if(redirect != null && fresh(redirect.at)) {
+            return CompletableFuture.completedFuture(redirect.target);
+        }
+        return checker.resolveAsync(url).thenApply(target -> {
+            site.redirects.put(url, new Redirect(target, clock.millis()));
+            return target;
+        });
+    }
+
+    /**
+     * @return the host's robots.txt, empty if it has none or couldn't be reached and we've never seen it.
+     */
+    public CompletableFuture<String> robots(String url) {
+        String host = host(url);
+        Site site = site(url);
+        String etag;
+        String lastModified;
+        synchronized (site) {
+            if(site.robotsAt > 0 && fresh(site.robotsAt)) {
+                return CompletableFuture.completedFuture(site.robotsOrEmpty());
+            }
+            boolean known = site.robotsAt > 0;
+            etag = known ? site.etag : null;
+            lastModified = known ? site.lastModified : null;
+        }
+
+        CompletableFuture<Site> mine = new CompletableFuture<>();
+        CompletableFuture<Site> theirs = fetching.putIfAbsent(host, mine);
+        if(theirs != null) {
+            return theirs.thenApply(Site::robotsOrEmpty);
+        }
+
+        checker.fetchAsync(robotsURL(url), etag, lastModified)
+                .whenComplete((fetched, e) -> {
+                    UrlChecker.Fetched response = fetched != null && fetched.isPresent() ? fetched.get() : null;
+                    synchronized (site) {
+                        if(response == null) {
+                            logger.warn("{} : robots.txt unreachable, keeping what we had", host);
+                        } else if(response.isNotModified()) {
+                            site.robotsAt = clock.millis();
+                        } else if(response.isOk() || response.isGone()) {
+                            site.robots = response.isOk() ? response.body : null;
+                            site.etag = response.isOk() ? response.etag : null;
+                            site.lastModified = response.isOk() ? response.lastModified : null;
+                            site.robotsAt = clock.millis();
+                        } else {
+                            logger.warn("{} : robots.txt {}, keeping what we had", host, response.status);
+                        }
+                    }
+                    fetching.remove(host, mine);
+                    mine.complete(site);
+                });
+
+        return mine.thenApply(Site::robotsOrEmpty);
+    }
+
+    /**
+     * @return the URLs that respond, in the order given.
+     */
+    public CompletableFuture<List<String>> check(Collection<String> urls) {
+        List<String> unchecked = new ArrayList<>();
+        for(String url : urls) {
+            Check check = site(url).checks.get(url);
+            if(check == null || !fresh(check.at)) {
+                unchecked.add(url);
+            }
+        }
+
+        return checker.checkAllAsync(unchecked).thenApply(pass -> {
+            long now = clock.millis();
+            for(String url : unchecked) {
+                site(url).checks.put(url, new Check(pass.contains(url), now));
+            }
+            List<String> ok = new ArrayList<>();
+            for(String url : urls) {
+                if(site(url).checks.get(url).ok) {
+                    ok.add(url);
+                }
+            }
+            return ok;
+        });
+    }
+
+    /**
+     * @return the crawl-delay for the user agent from robots.txt of the host the URL redirects to, in seconds,
+     * or -1 if it doesn't set one.
+     */
+    public float crawlDelay(String url, String userAgent) {
+        return parseCrawlDelay(resolve(url).thenCompose(this::robots).join(), userAgent);
+    }
+
+    public static String robotsURL(String url) {
+        URI uri = URI.create(url);
+        return uri.getScheme() + "://" + uri.getRawAuthority() + "/robots.txt";
+    }
+
+    /**
+     * Sitemap lines apply to the whole file, whatever group they're in.
+     */
+    public static Set<String> parseSitemaps(String robots) {
+        Set<String> sitemaps = new LinkedHashSet<>();
+        for(String[] line : lines(robots)) {
+            if(line[0].equals(SITEMAP) && !line[1].isEmpty()) {
+                sitemaps.add(line[1]);
+            }
+        }
+        return sitemaps;
+    }
+
+    /**
+     * The crawl-delay of the first group naming the user agent, else of the * group.
+     */
+    public static float parseCrawlDelay(String robots, String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+
+        Optional<Float> matched = Optional.empty();
+        Optional<Float> wildcard = Optional.empty();
+
+        boolean inAgents = false;
+        boolean matches = false;
+        boolean isWildcard = false;
+        for(String[] line : lines(robots)) {
+            if(line[0].equals(USER_AGENT)) {
+                if(!inAgents) {
+                    matches = false;
+                    isWildcard = false;
+                }
+                inAgents = true;
+                String name = line[1].toLowerCase(Locale.ROOT);
+                if(name.equals("*")) {
+                    isWildcard = true;
+                } else if(!name.isEmpty() && agent.contains(name)) {
+                    matches = true;
+                }
+                continue;
+            }
+            inAgents = false;
+            if(line[0].equals(CRAWL_DELAY)) {
+                try {
+                    float delay = Float.parseFloat(line[1]);
+                    if(matches && !matched.isPresent()) {
+                        matched = Optional.of(delay);
+                    }
+                    if(isWildcard && !wildcard.isPresent()) {
+                        wildcard = Optional.of(delay);
+                    }
+                } catch (NumberFormatException e) {
+                    // ignore
+                }
+            }
+        }
+        return matched.orElse(wildcard.orElse(-1f));
+    }
+
+    private static List<String[]> lines(String robots) {
+        List<String[]> lines = new ArrayList<>();
+        for(String line : robots.split("\\r?\\n")) {
+            int comment = line.indexOf('#');
+            if(comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            int i = line.indexOf(':');
+            if(i > 0) {
+                lines.add(new String[]{line.substring(0, i).trim().toLowerCase(Locale.ROOT), line.substring(i + 1).trim()});
+            }
+        }
+        return lines;
+    }
+}
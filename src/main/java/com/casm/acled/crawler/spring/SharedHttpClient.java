@@ -0,0 +1,231 @@
+package com.casm.acled.crawler.spring;
+
+import com.casm.acled.crawler.management.ConfigService;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The one HTTP client for the management services: connection checks, redirect following, robots.txt,
+ * sitemap checks and example scrapes. Keep-alive connections are pooled (crawler.httpMaxConnections in all,
+ * crawler.httpMaxPerHost to any one host), requests time out after crawler.httpTimeout ms, and responses are
+ * gzip/deflate-decoded by the client.
+ *
+ * Counts requests sent (each redirect hop included) and connections opened; every request that didn't open
+ * a connection reused a pooled one.
+ */
+@Component
+public class SharedHttpClient implements AutoCloseable {
+
+    protected static final Logger logger = LoggerFactory.getLogger(SharedHttpClient.class);
+
+    public static final int MAX_REDIRECTS = 10;
+
+    @Autowired
+    private ConfigService configService;
+
+    private CloseableHttpClient client;
+    private RequestConfig config;
+
+    private final AtomicLong requests = new AtomicLong(0);
+    private final AtomicLong opened = new AtomicLong(0);
+
+    public SharedHttpClient() {}
+
+    public SharedHttpClient(int maxConnections, int maxPerHost, int timeout, String userAgent) {
+        build(maxConnections, maxPerHost, timeout, userAgent);
+    }
+
+    @PostConstruct
+    public void init() {
+        if(client == null) {
+            build(configService.getHttpMaxConnections(), configService.getHttpMaxPerHost(),
+                    configService.getHttpTimeout(), configService.getUserAgent());
+        }
+    }
+
+    private void build(int maxConnections, int maxPerHost, int timeout, String userAgent) {
+
+        HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> counting = (route, config) -> {
+            opened.incrementAndGet();
+            return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+        };
+
+        PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager(counting);
+        connections.setMaxTotal(maxConnections);
+        connections.setDefaultMaxPerRoute(maxPerHost);
+        connections.setValidateAfterInactivity(2000);
+
+        config = RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .setMaxRedirects(MAX_REDIRECTS)
+                .build();
+
+        // content compression (Accept-Encoding: gzip,deflate and decoding) is on by default in the builder
+        client = HttpClients.custom()
+                .setConnectionManager(connections)
+                .setUserAgent(userAgent)
+                .setDefaultRequestConfig(config)
+                .addInterceptorLast((HttpRequestInterceptor) (request, context) -> requests.incrementAndGet())
+                .evictExpiredConnections()
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public CloseableHttpClient client() {
+        return client;
+    }
+
+    /**
+     * The status of a GET, and where a 3xx points.
+     */
+    public static class Status {
+        public final int code;
+        public final String location;
+
+        Status(int code, String location) {
+            this.code = code;
+            this.location = location;
+        }
+
+        public boolean isOk() {
+            return code >= 200 && code < 300;
+        }
+
+        public boolean isRedirect() {
+            return code >= 300 && code < 400;
+        }
+    }
+
+    /**
+     * GET the URL, reading and discarding the body so the connection can be reused.
+     *
+     * @param followRedirects if false, a 3xx is returned as it is, with its Location.
+     */
+    public Status status(String url, boolean followRedirects) throws IOException {
+        HttpGet get = new HttpGet(url);
+        if(!followRedirects) {
+            get.setConfig(RequestConfig.copy(config).setRedirectsEnabled(false).build());
+        }
+        try (CloseableHttpResponse response = client.execute(get)) {
+            Header location = response.getFirstHeader(HttpHeaders.LOCATION);
+            EntityUtils.consume(response.getEntity());
+            return new Status(response.getStatusLine().getStatusCode(), location == null ? null : location.getValue());
+        }
+    }
+
+    /**
+     * @return the body, if the URL responds with a 2xx status; empty if it doesn't or can't be reached.
+     */
+    public Optional<String> getString(String url) {
+        try (CloseableHttpResponse response = client.execute(new HttpGet(url))) {
+            int status = response.getStatusLine().getStatusCode();
+            if(status < 200 || status >= 300 || response.getEntity() == null) {
+                logger.warn("{} : {}", url, status);
+                EntityUtils.consume(response.getEntity());
+                return Optional.empty();
+            }
+            return Optional.of(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("{} : {}", url, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Follow the URL's redirects one hop at a time, up to MAX_REDIRECTS.
+     *
+     * @return the last URL reached: the first that doesn't redirect, or where it stopped on an error,
+     * a loop or the hop limit.
+     */
+    public String followRedirects(String url) {
+        Set<String> seen = new HashSet<>();
+        String current = url;
+        for(int hop = 0; hop < MAX_REDIRECTS; ++hop) {
+            if(!seen.add(current)) {
+                logger.warn("{} : redirect loop at {}", url, current);
+                return current;
+            }
+            Status status;
+            try {
+                status = status(current, false);
+            } catch (IOException | IllegalArgumentException e) {
+                logger.warn(current + " : " + e.getMessage());
+                return current;
+            }
+            if(!status.isRedirect() || status.location == null) {
+                if(!status.isOk()) {
+                    logger.warn(current + " : " + status.code);
+                }
+                return current;
+            }
+            try {
+                current = URI.create(current).resolve(status.location.trim()).toString();
+            } catch (IllegalArgumentException e) {
+                logger.warn("{} : bad redirect {}", current, status.location);
+                return current;
+            }
+        }
+        logger.warn("{} : stopped after {} redirects, at {}", url, MAX_REDIRECTS, current);
+        return current;
+    }
+
+    /**
+     * @return requests sent, each redirect hop counted.
+     */
+    public long requests() {
+        return requests.get();
+    }
+
+    public long connectionsOpened() {
+        return opened.get();
+    }
+
+    public long connectionsReused() {
+        return Math.max(0, requests.get() - opened.get());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d requests, %d connections opened, %d reused", requests(), connectionsOpened(), connectionsReused());
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        logger.info("http client: {}", this);
+        try {
+            client.close();
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.casm.acled.crawler.spring;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Per-source sitemap watermarks, so a crawl only fetches the child sitemaps of an index that have changed
+ * since the last successful crawl.
+ *
+ * Before a crawl, expand() reads each sitemap index (stopping at the root element for plain urlsets, which
+ * are passed through untouched) and replaces it with those children whose lastmod is at or after the
+ * source's watermark or, when the crawl is given a from date, at or after that date less a day instead, so
+ * an explicit from can reach back past the watermark. Children without a lastmod are always kept. After a
+ * crawl that completes without failed fetches, advance() moves the watermark to the newest child lastmod
+ * that index listed, so the newest child is fetched again next time; any other crawl leaves it where it was.
+ *
+ * Only the top level of an index is filtered; Norconex resolves any nested indexes in full.
+ */
+public class SitemapWatermarks {
+
+    protected static final Logger logger = LoggerFactory.getLogger(SitemapWatermarks.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final long DAY = 24 * 60 * 60 * 1000;
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Watermark {
+        public long watermark;
+        public Map<String, Long> children = new LinkedHashMap<>();
+    }
+
+    /**
+     * A sitemap index entry.
+     */
+    static class Child {
+        final String loc;
+        final Long lastmod;
+
+        Child(String loc, Long lastmod) {
+            this.loc = loc;
+            this.lastmod = lastmod;
+        }
+    }
+
+    /**
+     * The sitemaps to crawl for a source, and what to record if the crawl completes.
+     */
+    public static class Expansion {
+        private final int sourceId;
+        private final List<String> sitemaps = new ArrayList<>();
+        private final Map<String, Long> children = new LinkedHashMap<>();
+        private long newest = 0;
+        private int skipped = 0;
+
+        Expansion(int sourceId) {
+            this.sourceId = sourceId;
+        }
+
+        public List<String> getSitemaps() {
+            return sitemaps;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+    }
+
+    private final Path file;
+    private final UrlChecker checker;
+
+    private final ConcurrentMap<Integer, Watermark> watermarks = new ConcurrentHashMap<>();
+
+    public SitemapWatermarks(Path file, UrlChecker checker) {
+        this.file = file;
+        this.checker = checker;
+        load();
+    }
+
+    private void load() {
+        if(!Files.exists(file)) {
+            return;
+        }
+        try {
+            watermarks.putAll(MAPPER.readValue(file.toFile(), new TypeReference<Map<Integer, Watermark>>() {}));
+        } catch (IOException e) {
+            logger.warn("ignoring unreadable sitemap watermarks " + file, e);
+        }
+    }
+
+    private synchronized void save() {
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            if(file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            MAPPER.writeValue(tmp.toFile(), watermarks);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("couldn't save sitemap watermarks " + file, e);
+        }
+    }
+
+    public Optional<Watermark> get(int sourceId) {
+        return Optional.ofNullable(watermarks.get(sourceId));
+    }
+
+    /**
+     * @param from the crawl's from date, or null.
+     * @param full keep every child, but still record them so the watermark can advance.
+     */
+    public Expansion expand(int sourceId, List<String> sitemaps, LocalDate from, boolean full) {
+
+        long cutoff;
+        if(from != null) {
+            // as NorconexConfiguration does for URL lastmods
+            cutoff = from.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() - DAY;
+        } else {
+            cutoff = !full && watermarks.containsKey(sourceId) ? watermarks.get(sourceId).watermark : 0;
+        }
+
+        Expansion expansion = new Expansion(sourceId);
+        for(String sitemap : sitemaps) {
+            Optional<List<Child>> index = checker.read(sitemap, SitemapWatermarks::parseIndex);
+            if(!index.isPresent()) {
+                // a urlset, or unreadable; leave it to Norconex
+                expansion.sitemaps.add(sitemap);
+                continue;
+            }
+            for(Child child : index.get()) {
+                if(child.lastmod == null || child.lastmod >= cutoff) {
+                    expansion.sitemaps.add(child.loc);
+                } else {
+                    ++expansion.skipped;
+                }
+                if(child.lastmod != null) {
+                    expansion.children.put(child.loc, child.lastmod);
+                    expansion.newest = Math.max(expansion.newest, child.lastmod);
+                }
+            }
+        }
+
+        logger.info("source {}: {} sitemaps to crawl, {} unchanged child sitemaps skipped",
+                sourceId, expansion.sitemaps.size(), expansion.skipped);
+
+        return expansion;
+    }
+
+    /**
+     * Call once the crawl the expansion was for has completed without failed fetches.
+     */
+    public synchronized void advance(Expansion expansion) {
+        if(expansion.children.isEmpty()) {
+            return;
+        }
+        Watermark watermark = watermarks.computeIfAbsent(expansion.sourceId, id -> new Watermark());
+        watermark.watermark = Math.max(watermark.watermark, expansion.newest);
+        watermark.children.putAll(expansion.children);
+        save();
+    }
+
+    /**
+     * @return the entries of a sitemap index, or null if it's a urlset (or anything else), read no further
+     * than its root element.
+     */
+    static List<Child> parseIndex(InputStream in) throws IOException {
+        InputStream input = new BufferedInputStream(in);
+        input.mark(2);
+        int b1 = input.read();
+        int b2 = input.read();
+        input.reset();
+        if(b1 == 0x1f && b2 == 0x8b) {
+            input = new GZIPInputStream(input);
+        }
+
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(input);
+            try {
+                while(xml.hasNext() && xml.next() != XMLStreamConstants.START_ELEMENT) {
+                }
+                if(!xml.isStartElement() || !xml.getLocalName().equalsIgnoreCase("sitemapindex")) {
+                    return null;
+                }
+
+                List<Child> children = new ArrayList<>();
+                String loc = null;
+                Long lastmod = null;
+                while(xml.hasNext()) {
+                    int event = xml.next();
+                    if(event == XMLStreamConstants.START_ELEMENT) {
+                        String name = xml.getLocalName();
+                        if(name.equalsIgnoreCase("sitemap")) {
+                            loc = null;
+                            lastmod = null;
+                        } else if(name.equalsIgnoreCase("loc")) {
+                            loc = xml.getElementText().trim();
+                        } else if(name.equalsIgnoreCase("lastmod")) {
+                            lastmod = parseLastmod(xml.getElementText().trim());
+                        }
+                    } else if(event == XMLStreamConstants.END_ELEMENT
+                            && xml.getLocalName().equalsIgnoreCase("sitemap") && loc != null && !loc.isEmpty()) {
+                        children.add(new Child(loc, lastmod));
+                    }
+                }
+                return children;
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * W3C datetime, as sitemaps use: a date, or a date and time with or without an offset (UTC if without).
+     *
+     * @return epoch millis, or null if it can't be parsed.
+     */
+    static Long parseLastmod(String lastmod) {
+        try {
+            if(lastmod.length() <= 10) {
+                return LocalDate.parse(lastmod).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            }
+            try {
+                return OffsetDateTime.parse(lastmod).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                return LocalDateTime.parse(lastmod).toInstant(ZoneOffset.UTC).toEpochMilli();
+            }
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
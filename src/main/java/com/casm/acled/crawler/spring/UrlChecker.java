@@ -0,0 +1,400 @@
+package com.casm.acled.crawler.spring;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks and resolves URLs concurrently, for sitemap discovery and link resolution.
+ *
+ * Requests share one pooled keep-alive client and run on a bounded pool, with at most maxPerHost in flight
+ * to any one host. Requests beyond that wait in a queue for their host rather than on a pool thread, so a
+ * busy host never holds up the others. Checks use HEAD, falling back to GET (without reading the body) for
+ * servers that don't support it. Failures are logged and treated as a failed check, never thrown.
+ *
+ * The blocking methods wait for the same queued requests, so they mustn't be called from the pool itself.
+ */
+public class UrlChecker implements AutoCloseable {
+
+    protected static final Logger logger = LoggerFactory.getLogger(UrlChecker.class);
+
+    private static final int MAX_REDIRECTS = 10;
+
+    private final CloseableHttpClient client;
+    private final boolean ownsClient;
+    private final RequestConfig config;
+    private final ExecutorService executor;
+    private final int maxPerHost;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong(0);
+
+    public UrlChecker(int parallelism, int maxPerHost, int timeout, String userAgent) {
+        this(HttpClients.custom()
+                .setConnectionManager(connections(parallelism, maxPerHost))
+                .setUserAgent(userAgent)
+                .build(), true, parallelism, maxPerHost, timeout);
+    }
+
+    /**
+     * Checks through a client owned elsewhere, such as SharedHttpClient's, which close() leaves open.
+     */
+    public UrlChecker(CloseableHttpClient client, int parallelism, int maxPerHost, int timeout) {
+        this(client, false, parallelism, maxPerHost, timeout);
+    }
+
+    private UrlChecker(CloseableHttpClient client, boolean ownsClient, int parallelism, int maxPerHost, int timeout) {
+        this.client = client;
+        this.ownsClient = ownsClient;
+        this.maxPerHost = maxPerHost;
+
+        // set on each request, as it replaces whatever defaults the client was built with
+        config = RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .setMaxRedirects(MAX_REDIRECTS)
+                .build();
+
+        AtomicInteger n = new AtomicInteger(0);
+        executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "url-checker-" + n.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static PoolingHttpClientConnectionManager connections(int parallelism, int maxPerHost) {
+        PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+        connections.setMaxTotal(parallelism);
+        connections.setDefaultMaxPerRoute(maxPerHost);
+        return connections;
+    }
+
+    private <R extends HttpRequestBase> R configured(R request) {
+        request.setConfig(config);
+        return request;
+    }
+
+    /**
+     * @return whether the URL (after redirects) responds with a 2xx status.
+     */
+    public CompletableFuture<Boolean> checkAsync(String url) {
+        return limited(url, false, () -> {
+            int status = probe(url, HttpClientContext.create());
+            if(status < 200 || status >= 300) {
+                logger.warn("{} : {}", url, status);
+            }
+            return status >= 200 && status < 300;
+        });
+    }
+
+    public boolean check(String url) {
+        return checkAsync(url).join();
+    }
+
+    /**
+     * @return the URLs that pass check(), in the order given.
+     */
+    public CompletableFuture<List<String>> checkAllAsync(Collection<String> urls) {
+        List<String> candidates = new ArrayList<>(urls);
+        List<CompletableFuture<Boolean>> checks = new ArrayList<>();
+        for(String url : candidates) {
+            checks.add(checkAsync(url));
+        }
+        return CompletableFuture.allOf(checks.toArray(new CompletableFuture[0])).thenApply(v -> {
+            List<String> pass = new ArrayList<>();
+            for(int i = 0; i < candidates.size(); ++i) {
+                if(checks.get(i).join()) {
+                    pass.add(candidates.get(i));
+                }
+            }
+            return pass;
+        });
+    }
+
+    public List<String> checkAll(Collection<String> urls) {
+        return checkAllAsync(urls).join();
+    }
+
+    /**
+     * @return where the URL ends up after following redirects, or the URL itself if it can't be reached.
+     */
+    public CompletableFuture<String> resolveAsync(String url) {
+        return limited(url, url, () -> {
+            HttpClientContext context = HttpClientContext.create();
+            probe(url, context);
+            List<URI> redirects = context.getRedirectLocations();
+            return redirects == null || redirects.isEmpty() ? url : redirects.get(redirects.size() - 1).toString();
+        });
+    }
+
+    public String resolve(String url) {
+        return resolveAsync(url).join();
+    }
+
+    /**
+     * @return the body of the URL, if it responds with a 2xx status.
+     */
+    public CompletableFuture<Optional<String>> getAsync(String url) {
+        return limited(url, Optional.empty(), () -> {
+            requests.incrementAndGet();
+            try (CloseableHttpResponse response = client.execute(configured(new HttpGet(url)))) {
+                int status = response.getStatusLine().getStatusCode();
+                if(status < 200 || status >= 300 || response.getEntity() == null) {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                    return Optional.empty();
+                }
+                return Optional.of(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+            }
+        });
+    }
+
+    public Optional<String> get(String url) {
+        return getAsync(url).join();
+    }
+
+    /**
+     * A GET response, with the validators needed to revalidate it later.
+     */
+    public static class Fetched {
+        public final int status;
+        public final String body;
+        public final String etag;
+        public final String lastModified;
+
+        Fetched(int status, String body, String etag, String lastModified) {
+            this.status = status;
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public boolean isOk() {
+            return status >= 200 && status < 300;
+        }
+
+        public boolean isNotModified() {
+            return status == HttpStatus.SC_NOT_MODIFIED;
+        }
+
+        /**
+         * @return whether the server says there is nothing at the URL (404 or 410).
+         */
+        public boolean isGone() {
+            return status == HttpStatus.SC_NOT_FOUND || status == HttpStatus.SC_GONE;
+        }
+    }
+
+    /**
+     * Conditional GET: sends If-None-Match/If-Modified-Since for whichever validators aren't null.
+     *
+     * @return the response, or empty if the URL couldn't be reached. The body is only read for 2xx responses.
+     */
+    public CompletableFuture<Optional<Fetched>> fetchAsync(String url, String etag, String lastModified) {
+        return limited(url, Optional.empty(), () -> {
+            HttpGet get = configured(new HttpGet(url));
+            if(etag != null) {
+                get.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+            }
+            if(lastModified != null) {
+                get.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+            requests.incrementAndGet();
+            try (CloseableHttpResponse response = client.execute(get)) {
+                int status = response.getStatusLine().getStatusCode();
+                String body = null;
+                if(status >= 200 && status < 300 && response.getEntity() != null) {
+                    body = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+                } else {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                }
+                return Optional.of(new Fetched(status, body,
+                        header(response, HttpHeaders.ETAG),
+                        header(response, HttpHeaders.LAST_MODIFIED)));
+            }
+        });
+    }
+
+    public Optional<Fetched> fetch(String url, String etag, String lastModified) {
+        return fetchAsync(url, etag, lastModified).join();
+    }
+
+    public interface Reader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    /**
+     * GET the URL and hand the body to the reader. Whatever the reader leaves unread isn't downloaded.
+     *
+     * @return what the reader returned, or empty if the URL didn't respond with a 2xx status or couldn't be read.
+     */
+    public <T> Optional<T> read(String url, Reader<T> reader) {
+        return readAsync(url, reader).join();
+    }
+
+    public <T> CompletableFuture<Optional<T>> readAsync(String url, Reader<T> reader) {
+        return limited(url, Optional.empty(), () -> {
+            requests.incrementAndGet();
+            try (CloseableHttpResponse response = client.execute(configured(new HttpGet(url)))) {
+                int status = response.getStatusLine().getStatusCode();
+                if(status < 200 || status >= 300 || response.getEntity() == null) {
+                    logger.warn("{} : {}", url, status);
+                    EntityUtils.consumeQuietly(response.getEntity());
+                    return Optional.empty();
+                }
+                // not closing the stream: that would drain it, where closing the response drops the connection
+                return Optional.ofNullable(reader.read(response.getEntity().getContent()));
+            }
+        });
+    }
+
+    private static String header(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    /**
+     * @return the number of requests sent so far, redirects not counted.
+     */
+    public long requests() {
+        return requests.get();
+    }
+
+    /**
+     * HEAD the URL, or GET it without reading the body if the server won't answer a HEAD.
+     */
+    private int probe(String url, HttpClientContext context) throws IOException {
+        int status = execute(configured(new HttpHead(url)), context);
+        if(status == HttpStatus.SC_METHOD_NOT_ALLOWED || status == HttpStatus.SC_NOT_IMPLEMENTED
+                || status == HttpStatus.SC_FORBIDDEN || status == HttpStatus.SC_BAD_REQUEST) {
+            status = execute(configured(new HttpGet(url)), context);
+        }
+        return status;
+    }
+
+    private int execute(HttpRequestBase request, HttpClientContext context) throws IOException {
+        requests.incrementAndGet();
+        // closing without consuming a GET body drops that connection rather than downloading the body;
+        // HEAD responses have none, so their connections go back to the pool
+        try (CloseableHttpResponse response = client.execute(request, context)) {
+            return response.getStatusLine().getStatusCode();
+        }
+    }
+
+    private interface Request<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Requests in flight to one host, and those waiting for one of them to finish.
+     */
+    private static class Host {
+        private int active;
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+    }
+
+    /**
+     * Runs the request on the pool once fewer than maxPerHost are in flight to its host; until then it's queued
+     * for that host, holding no thread.
+     *
+     * @param failed the result if the URL can't be parsed or the request throws an IOException.
+     */
+    private <T> CompletableFuture<T> limited(String url, T failed, Request<T> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        String name;
+        try {
+            name = URI.create(url).getHost();
+            if(name == null) {
+                throw new IllegalArgumentException("no host in " + url);
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("{} : {}", url, e.getMessage());
+            result.complete(failed);
+            return result;
+        }
+
+        Host host = hosts.computeIfAbsent(name.toLowerCase(), h -> new Host());
+        Runnable task = () -> {
+            try {
+                result.complete(request.call());
+            } catch (IOException | IllegalArgumentException e) {
+                logger.warn("{} : {}", url, e.getMessage());
+                result.complete(failed);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                next(host);
+            }
+        };
+
+        synchronized (host) {
+            if(host.active >= maxPerHost) {
+                host.waiting.add(task);
+                return result;
+            }
+            ++host.active;
+        }
+        executor.execute(task);
+        return result;
+    }
+
+    /**
+     * A request to the host finished: hand its slot to the next one waiting, if any.
+     */
+    private void next(Host host) {
+        Runnable next;
+        synchronized (host) {
+            next = host.waiting.poll();
+            if(next == null) {
+                --host.active;
+            }
+        }
+        if(next != null) {
+            executor.execute(next);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        if(!ownsClient) {
+            return;
+        }
+        try {
+            client.close();
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+}
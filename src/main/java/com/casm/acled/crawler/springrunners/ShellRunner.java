@@ -4,7 +4,9 @@ import com.casm.acled.crawler.management.*;
 import com.casm.acled.crawler.reporting.Reporter;
 import com.casm.acled.crawler.scraper.ScraperService;
 import com.casm.acled.crawler.scraper.dates.DateTimeService;
+import com.casm.acled.crawler.scraper.keywords.KeywordsService;
 import com.casm.acled.crawler.scraper.locale.LocaleService;
+import com.casm.acled.crawler.spring.CrawlService;
 import com.casm.acled.dao.entities.ArticleDAO;
 import com.casm.acled.dao.entities.SourceDAO;
 import com.casm.acled.dao.entities.SourceListDAO;
@@ -34,6 +36,8 @@ import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellOption;
 
 import javax.validation.Valid;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 
@@ -103,6 +107,12 @@ public class ShellRunner {
     @Autowired
     private LocaleService localeService;
 
+    @Autowired
+    private KeywordsService keywordsService;
+
+    @Autowired
+    private CrawlService crawlService;
+
     @ShellMethod(value = "Copy a Source (-s) or SourceList (-sl) to a with a new name (-N) or suffix if flag 'S' is provided")
     public void copy(@ShellOption(optOut = true) @Valid CrawlArgs.Raw args) {
         CrawlArgs crawlArgs = argsService.get(args);
@@ -358,6 +368,42 @@ public class ShellRunner {
         return utilService.jsoupSearch(url, pattern);
     }
 
+    @ShellMethod(value = "build keyword highlights for articles crawled with -F LAZY_HIGHLIGHTS, usage: build-highlights -s SOURCE", key = "build-highlights")
+    public String buildHighlights(@ShellOption(optOut = true) @Valid CrawlArgs.Raw args) {
+
+        CrawlArgs crawlArgs = argsService.get(args);
+        crawlArgs.init();
+
+        int updated = keywordsService.buildHighlights(crawlArgs.source);
+
+        return String.format("%d articles updated", updated);
+    }
+
+    @ShellMethod(value = "show keyword matching statistics for this process, usage: keyword-stats", key = "keyword-stats")
+    public String keywordStats() {
+        return keywordsService.keywordStats();
+    }
+
+    @ShellMethod(value = "crawl all sources in a source list in this process, several at once. Usage: crawl-list -sl SOURCE-LIST -wd WORKING-DIR -sd SCRAPER-DIR [-par PARALLELISM]", key = "crawl-list")
+    public String crawlList(@ShellOption(value = {"-par", "--parallelism"}, defaultValue = "0") int parallelism,
+                            @ShellOption(optOut = true) @Valid CrawlArgs.Raw args) {
+
+        CrawlArgs crawlArgs = argsService.get(args);
+        crawlArgs.init();
+
+        if(crawlArgs.sourceLists.isEmpty()) {
+            return "source list (-sl) required";
+        }
+
+        List<Source> sources = sourceDAO.byList(crawlArgs.sourceLists.get(0));
+
+        Map<Integer, Throwable> failures = parallelism > 0
+                ? crawlService.runAll(crawlArgs, sources, parallelism)
+                : crawlService.runAll(crawlArgs, sources);
+
+        return String.format("%d sources crawled, %d failed %s", sources.size(), failures.size(), failures.keySet());
+    }
+
     @ShellMethod(value = "clear PIDs, usage: clear-pids", key = "clear-pids")
     public String clearPIDs(@ShellOption(optOut = true) @Valid CrawlArgs.Raw args) {
 
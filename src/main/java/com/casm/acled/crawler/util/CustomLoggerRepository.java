@@ -9,14 +9,15 @@ import org.apache.log4j.Hierarchy;
 import org.apache.log4j.Logger;
 
 import java.nio.file.Path;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 public class CustomLoggerRepository extends Hierarchy {
 
-    private static final Map<String, String> REGISTRY = new HashMap<>();
+    // Written by every crawl thread that starts, possibly several at once
+    private static final Map<String, String> REGISTRY = new ConcurrentHashMap<>();
 
     private final Cache<String, Logger> loggerCache;
     private final Cache<String, Appender> appenderCache;
@@ -0,0 +1,101 @@
+package com.casm.acled.crawler.management;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveDelayResolverTest {
+
+    private static final String URL = "https://news.example.com/article/1";
+
+    @Test
+    public void latencyTest() {
+        AdaptiveDelayResolver delays = new AdaptiveDelayResolver(1000, 50, 5000);
+
+        // a fast host converges towards its latency, down to the minimum
+        for(int i = 0; i < 50; ++i) {
+            delays.observe(URL, 200, 20, null);
+        }
+        assertEquals(50, delays.getDelay(URL));
+
+        // a slow one towards its latency
+        for(int i = 0; i < 50; ++i) {
+            delays.observe("https://slow.example.org/", 200, 2000, null);
+        }
+        assertEquals(2000, delays.getDelay("https://slow.example.org/"), 100);
+
+        // hosts are independent
+        assertEquals(50, delays.getDelay("http://NEWS.example.com/other"));
+        assertEquals(1000, delays.getDelay("https://unseen.example.net/"));
+    }
+
+    @Test
+    public void backoffTest() {
+        AdaptiveDelayResolver delays = new AdaptiveDelayResolver(200, 50, 1000);
+
+        delays.observe(URL, 429, 10, null);
+        assertEquals(400, delays.getDelay(URL));
+        delays.observe(URL, 503, 10, null);
+        assertEquals(800, delays.getDelay(URL));
+        delays.observe(URL, 429, 10, null);
+        assertEquals(1000, delays.getDelay(URL));
+
+        delays.observe("http://other.example.com/", -1, 10, null);
+        assertEquals(300, delays.getDelay("http://other.example.com/"));
+
+        AdaptiveDelayResolver.Host host = delays.hosts().get("news.example.com");
+        assertEquals(3, host.getBackoffs());
+        assertEquals(0, host.getRetryAfters());
+    }
+
+    @Test
+    public void retryAfterTest() {
+        AdaptiveDelayResolver delays = new AdaptiveDelayResolver(0, 0, 300);
+
+        delays.delay(URL, 0);
+        delays.observe(URL, 503, 10, "1");
+
+        // Retry-After of 1s, honoured although it's over the max delay
+        long start = System.currentTimeMillis();
+        delays.delay(URL, 0);
+        long waited = System.currentTimeMillis() - start;
+        assertTrue(waited >= 950 && waited < 2000);
+        // while the delay itself stays within the bounds
+        assertTrue(delays.getDelay(URL) <= 300);
+
+        AdaptiveDelayResolver.Host host = delays.hosts().get("news.example.com");
+        assertEquals(1, host.getRetryAfters());
+        assertEquals(2, host.getRequests());
+        assertEquals(1, host.getWaits());
+
+        assertEquals(120000, AdaptiveDelayResolver.retryAfter(" 120 "));
+        assertEquals(0, AdaptiveDelayResolver.retryAfter("soon"));
+        assertEquals(0, AdaptiveDelayResolver.retryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+    }
+
+    @Test
+    public void waitOutsideLockTest() throws InterruptedException {
+        AdaptiveDelayResolver delays = new AdaptiveDelayResolver(500, 0, 1000);
+        delays.delay(URL, 0);
+
+        Thread waiting = new Thread(() -> delays.delay(URL, 0));
+        waiting.start();
+        Thread.sleep(100);
+
+        // the host isn't locked while the other thread waits for its turn
+        long start = System.currentTimeMillis();
+        delays.observe(URL, 200, 10, null);
+        assertEquals(2, delays.hosts().get("news.example.com").getRequests());
+        assertTrue(System.currentTimeMillis() - start < 200);
+
+        // and the next hit is booked after the one being waited for
+        waiting.join();
+        AdaptiveDelayResolver.Host host = delays.hosts().get("news.example.com");
+        long delay = host.getDelay();
+        start = System.currentTimeMillis();
+        delays.delay(URL, 0);
+        assertTrue(System.currentTimeMillis() - start >= delay - 50);
+        assertEquals(3, host.getRequests());
+        assertEquals(2, host.getWaits());
+    }
+}
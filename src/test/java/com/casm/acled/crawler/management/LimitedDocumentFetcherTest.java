@@ -0,0 +1,62 @@
+package com.casm.acled.crawler.management;
+
+import com.casm.acled.crawler.spring.TestHttpServer;
+import com.norconex.collector.http.doc.HttpDocument;
+import com.norconex.collector.http.fetch.HttpFetchResponse;
+import com.norconex.collector.http.fetch.impl.GenericDocumentFetcher;
+import com.norconex.commons.lang.io.CachedStreamFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class LimitedDocumentFetcherTest {
+
+    private TestHttpServer server;
+    private CloseableHttpClient client;
+
+    @Before
+    public void start() throws IOException {
+        server = new TestHttpServer(2, exchange -> {
+            if(exchange.getRequestURI().getPath().equals("/busy")) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                TestHttpServer.respond(exchange, 503, "busy");
+            } else {
+                TestHttpServer.respond(exchange, 200, "<html><body>ok</body></html>");
+            }
+        });
+        client = HttpClients.createDefault();
+    }
+
+    @After
+    public void stop() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void retryAfterTest() {
+        AdaptiveDelayResolver delays = new AdaptiveDelayResolver(100, 0, 5000);
+        LimitedDocumentFetcher fetcher = new LimitedDocumentFetcher(new GenericDocumentFetcher(), delays);
+
+        HttpFetchResponse ok = fetcher.fetchDocument(client, document(server.base() + "/"));
+        assertEquals(200, ok.getStatusCode());
+        AdaptiveDelayResolver.Host host = delays.hosts().get("127.0.0.1");
+        assertEquals(0, host.getBackoffs());
+
+        // the fetcher leaves a 503's headers out of the metadata, so this is read from the response
+        HttpFetchResponse busy = fetcher.fetchDocument(client, document(server.base() + "/busy"));
+        assertEquals(503, busy.getStatusCode());
+        assertEquals(1, host.getBackoffs());
+        assertEquals(1, host.getRetryAfters());
+    }
+
+    private static HttpDocument document(String url) {
+        return new HttpDocument(url, new CachedStreamFactory(10 * 1024, 10 * 1024).newInputStream(""));
+    }
+}
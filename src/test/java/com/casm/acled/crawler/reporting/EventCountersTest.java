@@ -0,0 +1,73 @@
+package com.casm.acled.crawler.reporting;
+
+import com.casm.acled.crawler.reporting.ReportQueryService.EventCountSummary;
+import com.casm.acled.crawler.scraper.ACLEDCommitter;
+import com.casm.acled.entities.source.Source;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EventCountersTest {
+
+    private static Report report(Event event) {
+        return Report.of(1, Source.class, ACLEDCommitter.class, "http://example.com").event(event).runId("1~2020-11-26");
+    }
+
+    @Test
+    public void summaryRoundTripTest() {
+
+        EventCounters counters = new EventCounters();
+        for(int i = 0; i < 3; ++i) {
+            counters.count(report(Event.REFERENCE_ACCEPTED));
+        }
+        counters.count(report(Event.SCRAPE_PASS));
+        counters.count(Report.of(1, Source.class, ACLEDCommitter.class, "no event"));
+
+        assertEquals(3, counters.get("1~2020-11-26", 1, Source.class.getName(), ACLEDCommitter.class.getName(), Event.REFERENCE_ACCEPTED));
+
+        List<Report> summaries = counters.drain();
+        assertEquals(1, summaries.size());
+
+        Report summary = summaries.get(0);
+        assertEquals(Event.RUN_SUMMARY.name(), summary.event());
+        assertEquals("1~2020-11-26", summary.runId());
+        assertEquals(ACLEDCommitter.class.getName(), EventCounters.reporterType(summary));
+
+        EventCountSummary counts = EventCounters.addTo(new EventCountSummary(), summary);
+        assertEquals(3, counts.getCount(Event.REFERENCE_ACCEPTED));
+        assertEquals(1, counts.getCount(Event.SCRAPE_PASS));
+        assertEquals(0, counts.getCount(Event.SCRAPE_FAIL));
+
+        // Drained counts start again from zero, and nothing new means no summary
+        assertTrue(counters.drain().isEmpty());
+    }
+
+    @Test
+    public void drainSourceTest() {
+
+        EventCounters counters = new EventCounters();
+        counters.count(report(Event.REFERENCE_ACCEPTED));
+        counters.count(Report.of(2, Source.class, ACLEDCommitter.class, "other source").event(Event.SCRAPE_PASS).runId("2~2020-11-26"));
+
+        // only the finishing source's counts are drained
+        List<Report> first = counters.drain(1);
+        assertEquals(1, first.size());
+        assertEquals("1~2020-11-26", first.get(0).runId());
+        assertEquals(1, counters.get("2~2020-11-26", 2, Source.class.getName(), ACLEDCommitter.class.getName(), Event.SCRAPE_PASS));
+
+        // later counts for the same run are added to the stored summary
+        counters.count(report(Event.REFERENCE_ACCEPTED));
+        counters.count(report(Event.SCRAPE_FAIL));
+        List<Report> second = counters.drain(1);
+        assertEquals(1, second.size());
+
+        Report merged = EventCounters.merge(first.get(0), second.get(0));
+        assertEquals(ACLEDCommitter.class.getName(), EventCounters.reporterType(merged));
+        EventCountSummary counts = EventCounters.addTo(new EventCountSummary(), merged);
+        assertEquals(2, counts.getCount(Event.REFERENCE_ACCEPTED));
+        assertEquals(1, counts.getCount(Event.SCRAPE_FAIL));
+        assertEquals(0, counts.getCount(Event.SCRAPE_PASS));
+    }
+}
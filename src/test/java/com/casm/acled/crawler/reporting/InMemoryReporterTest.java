@@ -0,0 +1,70 @@
+package com.casm.acled.crawler.reporting;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class InMemoryReporterTest {
+
+    @Test
+    public void ringBufferTest() {
+
+        InMemoryReporter reporter = new InMemoryReporter(10);
+        for(int i = 0; i < 25; ++i) {
+            reporter.report(Report.of(Event.SCRAPE_PASS, i % 2).message(Integer.toString(i)));
+        }
+
+        // Only the newest 10 are kept, oldest first, but all 25 are counted
+        assertEquals(10, reporter.reports().size());
+        assertEquals("15", reporter.reports().get(0).message());
+        assertEquals(25, reporter.count(Event.SCRAPE_PASS));
+        assertEquals(15, reporter.dropped());
+
+        List<String> odd = reporter.getRunReports(1).stream().map(Report::message).collect(Collectors.toList());
+        assertEquals(5, odd.size());
+        assertEquals("15", odd.get(0));
+        assertEquals("23", odd.get(4));
+    }
+
+    @Test
+    public void collectionTest() {
+
+        InMemoryReporter reporter = new InMemoryReporter(10);
+        List<Report> reports = new ArrayList<>();
+        reports.add(Report.of(Event.SCRAPE_PASS, 1));
+        reports.add(Report.of(Event.SCRAPE_FAIL, 1));
+        reporter.report(reports);
+
+        assertEquals(2, reporter.reports().size());
+        assertEquals(1, reporter.getRunReports(1, Event.SCRAPE_FAIL).size());
+    }
+
+    @Test
+    public void concurrentWritersTest() throws InterruptedException {
+
+        InMemoryReporter reporter = new InMemoryReporter(1000);
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < 8; ++t) {
+            int id = t;
+            threads.add(new Thread(() -> {
+                for(int i = 0; i < 500; ++i) {
+                    reporter.report(Report.of(Event.REFERENCE_ACCEPTED, id));
+                }
+            }));
+        }
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(4000, reporter.received());
+        assertEquals(4000, reporter.count(Event.REFERENCE_ACCEPTED));
+        assertEquals(1000, reporter.reports().size());
+    }
+}
@@ -0,0 +1,148 @@
+package com.casm.acled.crawler.scraper;
+
+import com.casm.acled.entities.EntityVersions;
+import com.casm.acled.entities.source.Source;
+import com.norconex.importer.doc.ImporterMetadata;
+import com.norconex.importer.handler.ImporterHandlerException;
+import com.norconex.importer.handler.tagger.impl.DOMTagger;
+import com.norconex.importer.handler.transformer.impl.ReplaceTransformer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares CPU time per page of the old crawl pre-parse pipeline (a regex ReplaceTransformer stripping
+ * scripts, then a plain DOMTagger) against ACLEDTagger on its own, with the selectors of
+ * testscrapers/generic. Uses any .html saved under testscrapers/, plus generated pages in that scraper's
+ * layout. Not picked up by surefire; run explicitly.
+ */
+public class ACLEDTaggerBenchmark {
+
+    private static final Path SCRAPERS = Paths.get("testscrapers");
+    private static final int PAGES = 200;
+    private static final int ROUNDS = 5;
+
+    private static ACLEDTagger tagger() {
+        Source source = EntityVersions.get(Source.class).current()
+                .put(Source.CRAWL_SCRAPER_PATH, SCRAPERS.resolve("generic").toString())
+                .put(Source.SCRAPER_RULE_TITLE, "div#content h1")
+                .id(0);
+        return new ACLEDTaggerFactory(SCRAPERS, source).get();
+    }
+
+    private static String page(int i) {
+        StringBuilder html = new StringBuilder("<html><head><title>Page ").append(i).append("</title>");
+        for(int s = 0; s < 20; ++s) {
+            html.append("<script type=\"text/javascript\">var cfg").append(s)
+                    .append(" = {\"id\": ").append(i).append(", \"items\": [1, 2, 3]}; window.dataLayer.push(cfg")
+                    .append(s).append(");</script>\n");
+        }
+        html.append("<style>.article p { margin: 0 } .date { color: #999 }</style></head><body>");
+        html.append("<div id=\"nav\">");
+        for(int n = 0; n < 100; ++n) {
+            html.append("<a href=\"/section/").append(n).append("\">Section ").append(n).append("</a>");
+        }
+        html.append("</div><div id=\"content\"><h1>Protesters gather in the capital ").append(i).append("</h1>")
+                .append("<span class=\"date\">12 March 2020</span><div class=\"article\">");
+        for(int p = 0; p < 30; ++p) {
+            html.append("<p>Paragraph ").append(p).append(" of the report, with <b>some</b> inline markup.</p>");
+            if(p % 10 == 0) {
+                html.append("<script>ads.render('slot-").append(p).append("');</script>");
+            }
+        }
+        return html.append("</div></div><div id=\"footer\">footer</div></body></html>").toString();
+    }
+
+    private static List<byte[]> corpus() throws IOException {
+        List<byte[]> pages = new ArrayList<>();
+        if(Files.isDirectory(SCRAPERS)) {
+            try (Stream<Path> files = Files.walk(SCRAPERS)) {
+                for(Path file : files.filter(f -> f.toString().endsWith(".html")).collect(Collectors.toList())) {
+                    pages.add(Files.readAllBytes(file));
+                }
+            }
+        }
+        for(int i = pages.size(); i < PAGES; ++i) {
+            pages.add(page(i).getBytes(StandardCharsets.UTF_8));
+        }
+        return pages;
+    }
+
+    private static ImporterMetadata metadata() {
+        ImporterMetadata metadata = new ImporterMetadata();
+        metadata.setString(ImporterMetadata.DOC_CONTENT_TYPE, "text/html");
+        metadata.setString(ImporterMetadata.DOC_CONTENT_ENCODING, "UTF-8");
+        return metadata;
+    }
+
+    private interface Pipeline {
+        ImporterMetadata run(byte[] page) throws ImporterHandlerException;
+    }
+
+    private static double cpuPerPage(List<byte[]> corpus, Pipeline pipeline) throws ImporterHandlerException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        // warm up
+        for(byte[] page : corpus) {
+            pipeline.run(page);
+        }
+        long start = threads.getCurrentThreadCpuTime();
+        for(int r = 0; r < ROUNDS; ++r) {
+            for(byte[] page : corpus) {
+                pipeline.run(page);
+            }
+        }
+        return (threads.getCurrentThreadCpuTime() - start) / 1e3 / (ROUNDS * corpus.size());
+    }
+
+    @Test
+    public void cpuPerPage() throws Exception {
+
+        List<byte[]> corpus = corpus();
+
+        ACLEDTagger tagger = tagger();
+
+        ReplaceTransformer transformer = new ReplaceTransformer();
+        transformer.addReplacement("<script.*?>.*?<\\/script>", "");
+        DOMTagger domTagger = new DOMTagger();
+        for(DOMTagger.DOMExtractDetails details : tagger.getDOMExtractDetailsList()) {
+            domTagger.addDOMExtractDetails(details);
+        }
+
+        Pipeline before = page -> {
+            ImporterMetadata metadata = metadata();
+            ByteArrayOutputStream stripped = new ByteArrayOutputStream();
+            transformer.transformDocument("n/a", new ByteArrayInputStream(page), stripped, metadata, false);
+            domTagger.tagDocument("n/a", new ByteArrayInputStream(stripped.toByteArray()), metadata, false);
+            return metadata;
+        };
+        Pipeline after = page -> {
+            ImporterMetadata metadata = metadata();
+            tagger.tagDocument("n/a", new ByteArrayInputStream(page), metadata, false);
+            return metadata;
+        };
+
+        // same fields either way
+        for(String field : new String[]{ScraperFields.SCRAPED_ARTICLE, ScraperFields.SCRAPED_TITLE, ScraperFields.SCRAPED_DATE}) {
+            assertEquals(before.run(corpus.get(0)).getString(field), after.run(corpus.get(0)).getString(field));
+        }
+
+        double old = cpuPerPage(corpus, before);
+        double single = cpuPerPage(corpus, after);
+        System.out.println(String.format("%d pages: replace+DOMTagger %.0f us/page, ACLEDTagger %.0f us/page (%.2fx)",
+                corpus.size(), old, single, old / single));
+    }
+}
@@ -0,0 +1,96 @@
+package com.casm.acled.crawler.scraper;
+
+import com.casm.acled.crawler.management.ConfigService;
+import com.casm.acled.entities.EntityVersions;
+import com.casm.acled.entities.article.Article;
+import com.casm.acled.entities.source.Source;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ArticlePagesTest {
+
+    /**
+     * Serves one page of acled_article rows and keeps the updates.
+     */
+    private static class Rows extends JdbcTemplate {
+
+        private final List<Map<String, Object>> rows;
+        private final List<Object[]> updates = new ArrayList<>();
+        private boolean served;
+
+        private Rows(List<Map<String, Object>> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            List<T> page = new ArrayList<>();
+            if(!served) {
+                served = true;
+                for(Map<String, Object> row : rows) {
+                    ResultSet rs = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {ResultSet.class},
+                            (proxy, method, params) -> row.get((String) params[0]));
+                    try {
+                        page.add(rowMapper.mapRow(rs, page.size()));
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+            return page;
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            updates.addAll(batchArgs);
+            return new int[batchArgs.size()];
+        }
+    }
+
+    @Test
+    public void unknownFieldsKeptTest() throws IOException {
+        Rows rows = new Rows(ImmutableList.of(row(7,
+                "{\"SOURCE_ID\": 1, \"URL\": \"http://news.example.com/1\", \"TITLE\": \"old\", \"LEGACY_FIELD\": \"kept\"}")));
+        ArticlePages articlePages = new ArticlePages(rows, new ConfigService());
+
+        Source source = EntityVersions.get(Source.class).current().id(1);
+        ArticlePages.Pages pages = articlePages.pages(source, 0, 10);
+        List<Article> page = pages.next();
+        assertEquals(1, page.size());
+        assertEquals("old", page.get(0).get(Article.TITLE));
+        assertFalse(pages.hasNext());
+
+        // as a rescrape would change it
+        Article changed = page.get(0).put(Article.TITLE, "new").put(Article.TEXT, "body");
+        pages.write(ImmutableList.of(changed), ImmutableList.of(Article.TITLE, Article.TEXT, Article.SCRAPE_DATE, Article.DATE));
+
+        assertEquals(1, rows.updates.size());
+        assertEquals(7, rows.updates.get(0)[1]);
+        JsonNode data = new ObjectMapper().readTree((String) rows.updates.get(0)[0]);
+        assertEquals("new", data.get("TITLE").asText());
+        assertEquals("body", data.get("TEXT").asText());
+        assertEquals("kept", data.get("LEGACY_FIELD").asText());
+        assertEquals("http://news.example.com/1", data.get("URL").asText());
+        assertEquals(1, data.get("SOURCE_ID").asInt());
+    }
+
+    // a row without a business key
+    private static Map<String, Object> row(int id, String data) {
+        return ImmutableMap.of("id", id, "data", data);
+    }
+}
@@ -0,0 +1,69 @@
+package com.casm.acled.crawler.scraper;
+
+import com.casm.acled.crawler.springrunners.SpringOnlyRunner;
+import com.casm.acled.dao.entities.ArticleDAO;
+import com.casm.acled.entities.EntityVersions;
+import com.casm.acled.entities.article.Article;
+import com.casm.acled.entities.source.Source;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.LocalDate;
+
+/**
+ * Compares inserts/second of one create() per article against the batched ArticleWriter.
+ * Not picked up by surefire; run explicitly against a scratch database.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = { SpringOnlyRunner.class })
+public class ArticleWriterBenchmark {
+
+    private static final int N = 2000;
+
+    @Autowired
+    private ArticleDAO articleDAO;
+
+    private final Source source = EntityVersions.get(Source.class).current().id(-1);
+
+    private Article article(int i) {
+        return EntityVersions.get(Article.class).current()
+                .put(Article.TEXT, "benchmark article " + i)
+                .put(Article.URL, "http://benchmark.invalid/" + i)
+                .put(Article.CRAWL_DATE, LocalDate.now())
+                .put(Article.SOURCE_ID, source.id());
+    }
+
+    @After
+    public void cleanUp() {
+        articleDAO.delete(articleDAO.bySource(source));
+    }
+
+    @Test
+    public void perRow() {
+        long start = System.nanoTime();
+        for(int i = 0; i < N; ++i) {
+            articleDAO.create(article(i));
+        }
+        print("per-row", start);
+    }
+
+    @Test
+    public void writeBehind() {
+        long start = System.nanoTime();
+        try (ArticleWriter writer = new ArticleWriter(articleDAO, 100, 2000, 1000)) {
+            for(int i = 0; i < N; ++i) {
+                writer.add(article(i));
+            }
+        }
+        print("write-behind", start);
+    }
+
+    private void print(String name, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%s: %d articles in %.2fs (%.0f inserts/s)", name, N, seconds, N / seconds));
+    }
+}
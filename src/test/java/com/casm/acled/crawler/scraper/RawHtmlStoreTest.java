@@ -0,0 +1,114 @@
+package com.casm.acled.crawler.scraper;
+
+import com.casm.acled.crawler.management.ConfigService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RawHtmlStoreTest {
+
+    /**
+     * Holds the acled_raw_html rows in memory.
+     */
+    private static class Blobs extends JdbcTemplate {
+
+        private final Map<String, byte[]> rows = new HashMap<>();
+        private int created;
+
+        @Override
+        public void execute(String sql) {
+            ++created;
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            return rows.putIfAbsent((String) args[0], (byte[]) args[1]) == null ? 1 : 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            List<T> found = new ArrayList<>();
+            if(rows.containsKey(args[0])) {
+                found.add((T) rows.get(args[0]));
+            }
+            return found;
+        }
+    }
+
+    private Blobs blobs;
+    private RawHtmlStore store;
+
+    @Before
+    public void setUp() {
+        blobs = new Blobs();
+        store = new RawHtmlStore(blobs, new ConfigService());
+        store.init();
+    }
+
+    @Test
+    public void dedupeTest() throws IOException {
+
+        assertEquals(1, blobs.created);
+
+        String html = "<html><body><p>Manifestación en Bogotá</p></body></html>";
+
+        String first = store.write(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), "utf-8");
+        String second = store.write(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), null);
+        String other = store.write(new ByteArrayInputStream("<html></html>".getBytes(StandardCharsets.UTF_8)), "UTF-8");
+
+        assertTrue(RawHtmlStore.isReference(first));
+        assertTrue(first.startsWith("blob:UTF-8:"));
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+        assertEquals(2, blobs.rows.size());
+
+        assertEquals(html, store.read(first));
+        assertEquals("<html></html>", store.read(other));
+    }
+
+    @Test
+    public void charsetTest() throws IOException {
+
+        String html = "<p>Bogotá, año</p>";
+        String stored = store.write(new ByteArrayInputStream(html.getBytes(StandardCharsets.ISO_8859_1)), "ISO-8859-1");
+        assertEquals(html, store.read(stored));
+    }
+
+    @Test
+    public void missingTest() throws IOException {
+
+        String stored = store.write(new ByteArrayInputStream("<html></html>".getBytes(StandardCharsets.UTF_8)), null);
+        blobs.rows.clear();
+        try {
+            store.read(stored);
+            fail();
+        } catch (RuntimeException e) {
+            // rescrape skips the article
+        }
+    }
+
+    @Test
+    public void inlineTest() throws IOException {
+
+        // values stored before the blob store are still readable
+        String html = "<html><body>inline</body></html>";
+        String deflated = RawHtml.encode(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), "UTF-8");
+
+        assertFalse(RawHtmlStore.isReference(deflated));
+        assertEquals(html, store.read(deflated));
+        assertEquals(html, store.read(html));
+        assertNull(store.read(null));
+        assertEquals(0, blobs.rows.size());
+    }
+}
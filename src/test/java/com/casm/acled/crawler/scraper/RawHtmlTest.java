@@ -0,0 +1,48 @@
+package com.casm.acled.crawler.scraper;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class RawHtmlTest {
+
+    private static String page() {
+        StringBuilder html = new StringBuilder("<html><head><title>Protesta en Bogotá</title></head><body>");
+        for(int i = 0; i < 200; ++i) {
+            html.append("<div class=\"item\"><a href=\"/noticias/").append(i).append("\">Manifestación número ")
+                    .append(i).append(" – «sin incidentes»</a></div>\n");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+
+        String html = page();
+
+        String utf8 = RawHtml.encode(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), "utf-8");
+        assertTrue(RawHtml.isEncoded(utf8));
+        assertEquals(html, RawHtml.decode(utf8));
+        // compressed, even after base64
+        assertTrue(utf8.length() * 4 < html.getBytes(StandardCharsets.UTF_8).length);
+
+        String latin = "<p>Bogotá, año</p>";
+        String latin1 = RawHtml.encode(new ByteArrayInputStream(latin.getBytes(StandardCharsets.ISO_8859_1)), "ISO-8859-1");
+        assertEquals(latin, RawHtml.decode(latin1));
+
+        String unknown = RawHtml.encode(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), null);
+        assertEquals(html, RawHtml.decode(unknown));
+    }
+
+    @Test
+    public void legacyTest() {
+        // raw html stored before compression is returned as it is
+        assertEquals("<html></html>", RawHtml.decode("<html></html>"));
+        assertFalse(RawHtml.isEncoded("<html></html>"));
+        assertNull(RawHtml.decode(null));
+    }
+}
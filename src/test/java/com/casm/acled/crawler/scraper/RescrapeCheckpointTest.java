@@ -0,0 +1,42 @@
+package com.casm.acled.crawler.scraper;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+public class RescrapeCheckpointTest {
+
+    @Test
+    public void resumeTest() throws IOException {
+
+        Path dir = Files.createTempDirectory("rescrape");
+        LocalDate from = LocalDate.of(2020, 1, 1);
+
+        RescrapeCheckpoint checkpoint = RescrapeCheckpoint.load(dir, 7, from, null);
+        assertEquals(0, checkpoint.lastId);
+
+        checkpoint.lastId = 1200;
+        checkpoint.processed = 400;
+        checkpoint.changed = 12;
+        checkpoint.save(dir);
+
+        // same source and dates carry on
+        RescrapeCheckpoint resumed = RescrapeCheckpoint.load(dir, 7, from, null);
+        assertEquals(1200, resumed.lastId);
+        assertEquals(400, resumed.processed);
+        assertEquals(12, resumed.changed);
+
+        // different dates start again
+        assertEquals(0, RescrapeCheckpoint.load(dir, 7, from, LocalDate.of(2020, 6, 1)).lastId);
+        assertEquals(0, RescrapeCheckpoint.load(dir, 8, from, null).lastId);
+
+        resumed.clear(dir);
+        assertFalse(Files.exists(RescrapeCheckpoint.file(dir, 7)));
+        assertEquals(0, RescrapeCheckpoint.load(dir, 7, from, null).lastId);
+    }
+}
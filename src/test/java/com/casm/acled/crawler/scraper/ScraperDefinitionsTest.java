@@ -0,0 +1,45 @@
+package com.casm.acled.crawler.scraper;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+public class ScraperDefinitionsTest {
+
+    @Test
+    public void reloadTest() throws IOException {
+
+        Path job = Files.createTempDirectory("scraper").resolve(ACLEDTaggerFactory.JOB_JSON);
+        String json = new String(Files.readAllBytes(Paths.get("testscrapers/generic", ACLEDTaggerFactory.JOB_JSON)),
+                StandardCharsets.UTF_8);
+        Files.write(job, json.getBytes(StandardCharsets.UTF_8));
+
+        long parses = ScraperDefinitions.parses();
+        ScraperDefinitions.Definition first = ScraperDefinitions.get(job);
+        assertTrue(first.getFields().containsKey(ACLEDTaggerFactory.ARTICLE));
+        assertSame(first, ScraperDefinitions.get(job));
+        assertEquals(parses + 1, ScraperDefinitions.parses());
+
+        // touched, same content: not parsed again
+        Files.setLastModifiedTime(job, FileTime.fromMillis(Files.getLastModifiedTime(job).toMillis() + 2000));
+        assertEquals(first.getHash(), ScraperDefinitions.get(job).getHash());
+        assertSame(first.getFields(), ScraperDefinitions.get(job).getFields());
+        assertEquals(parses + 1, ScraperDefinitions.parses());
+
+        // edited: parsed again, with the new selector
+        Files.write(job, json.replace("\"article\"", "\"story\"").getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(job, FileTime.fromMillis(Files.getLastModifiedTime(job).toMillis() + 4000));
+        ScraperDefinitions.Definition edited = ScraperDefinitions.get(job);
+        assertNotEquals(first.getHash(), edited.getHash());
+        assertEquals(parses + 2, ScraperDefinitions.parses());
+        assertTrue(ACLEDTaggerFactory.domDetailsSingle(edited.getFields(), ACLEDTaggerFactory.ARTICLE,
+                ScraperFields.SCRAPED_ARTICLE).getSelector().endsWith("div.story"));
+    }
+}
@@ -0,0 +1,133 @@
+package com.casm.acled.crawler.scraper.dates;
+
+import com.google.common.collect.ImmutableList;
+import com.ibm.icu.util.ULocale;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class CompositeDateParserTest {
+
+    @Test
+    public void adaptiveOrderTest() {
+
+        CompositeDateParser parser = CompositeDateParser.adaptive(ImmutableList.of(
+                "ISO:/yyyy-MM-dd/",
+                "ISO:/EEEE, MMMM d, yyyy/en",
+                "ISO:/dd MMM yyyy/en"
+        ), null);
+
+        for(int i = 0; i < 64; ++i) {
+            assertEquals(LocalDate.of(2019, 11, 26), parser.parse("26 Nov 2019").get().toLocalDate());
+        }
+
+        // The third spec did the work, so it is now tried first; the rest keep their configured order
+        assertEquals(ImmutableList.of("ISO:/dd MMM yyyy/en", "ISO:/yyyy-MM-dd/", "ISO:/EEEE, MMMM d, yyyy/en"),
+                parser.getOrder().stream().flatMap(p -> p.getFormatSpec().stream()).collect(Collectors.toList()));
+
+        Map<String, Long> counts = parser.getSuccessCounts();
+        assertEquals(Long.valueOf(0), counts.get("ISO:/yyyy-MM-dd/"));
+        assertEquals(Long.valueOf(0), counts.get("ISO:/EEEE, MMMM d, yyyy/en"));
+        assertEquals(Long.valueOf(64), counts.get("ISO:/dd MMM yyyy/en"));
+    }
+
+    @Test
+    public void staticOrderTest() {
+
+        CompositeDateParser parser = (CompositeDateParser) CompositeDateParser.of(ImmutableList.of(
+                "ISO:/yyyy-MM-dd/",
+                "ISO:/dd MMM yyyy/en"
+        ));
+
+        for(int i = 0; i < 64; ++i) {
+            parser.parse("26 Nov 2019");
+        }
+
+        assertFalse(parser.isAdaptive());
+        assertEquals("ISO:/yyyy-MM-dd/", parser.getOrder().get(0).getFormatSpec().get(0));
+    }
+
+    /**
+     * Reads nn/nn/yyyy with the day first or the month first, rejecting out of range fields.
+     */
+    private static DateParser numeric(boolean dayFirst) {
+        Pattern pattern = Pattern.compile("(\\d\\d)/(\\d\\d)/(\\d{4})");
+        return new DateParser() {
+            @Override
+            public Optional<LocalDateTime> parse(String date) {
+                Matcher m = pattern.matcher(date);
+                if(!m.matches()) {
+                    return Optional.empty();
+                }
+                int day = Integer.parseInt(m.group(dayFirst ? 1 : 2));
+                int month = Integer.parseInt(m.group(dayFirst ? 2 : 1));
+                if(month > 12 || day > 31) {
+                    return Optional.empty();
+                }
+                return Optional.of(LocalDate.of(Integer.parseInt(m.group(3)), month, day).atStartOfDay());
+            }
+
+            @Override
+            public DateParser locale(List<ULocale> locale) {
+                return this;
+            }
+
+            @Override
+            public List<String> getFormatSpec() {
+                return ImmutableList.of(dayFirst ? "dd/MM/yyyy" : "MM/dd/yyyy");
+            }
+        };
+    }
+
+    @Test
+    public void ambiguousAfterReorderTest() {
+
+        CompositeDateParser parser = new CompositeDateParser(ImmutableList.of(numeric(true), numeric(false)), true);
+
+        // only month first can read these, so it is promoted
+        for(int i = 0; i < 64; ++i) {
+            assertEquals(LocalDate.of(2019, 12, 25), parser.parse("12/25/2019").get().toLocalDate());
+        }
+        assertEquals("MM/dd/yyyy", parser.getOrder().get(0).getFormatSpec().get(0));
+
+        // both can read this one: the configured order still decides
+        assertEquals(LocalDate.of(2020, 4, 3), parser.parse("03/04/2020").get().toLocalDate());
+        assertEquals(Long.valueOf(1), parser.getSuccessCounts().get("dd/MM/yyyy"));
+        assertEquals(Long.valueOf(64), parser.getSuccessCounts().get("MM/dd/yyyy"));
+    }
+
+    @Test
+    public void overlapTest() {
+
+        CompositeDateParser parser = CompositeDateParser.adaptive(ImmutableList.of(
+                "ISO:|dd/MM/yyyy|",
+                "ISO:|MM/dd/yyyy|",
+                "ISO:|yyyy-MM-dd|",
+                "ISO:|EEEE, MMMM d, yyyy|en"
+        ), null);
+
+        // 03/04/2020 reads either way, so a match by month first is checked against day first
+        assertTrue(parser.overlaps(1, 0));
+        // but an ISO date can't be mistaken for a written out one
+        assertFalse(parser.overlaps(3, 2));
+
+        for(int i = 0; i < 64; ++i) {
+            assertEquals(LocalDate.of(2019, 11, 26), parser.parse("Tuesday, November 26, 2019").get().toLocalDate());
+        }
+        assertEquals("ISO:|EEEE, MMMM d, yyyy|en", parser.getOrder().get(0).getFormatSpec().get(0));
+        assertEquals(LocalDate.of(2020, 4, 3), parser.parse("03/04/2020").get().toLocalDate());
+        assertEquals(LocalDate.of(2020, 4, 3), parser.parse("2020-04-03").get().toLocalDate());
+
+        // a static composite never checks back, as it tries the parsers in configured order
+        assertFalse(((CompositeDateParser) CompositeDateParser.of(ImmutableList.of("ISO:|dd/MM/yyyy|", "ISO:|MM/dd/yyyy|"))).overlaps(1, 0));
+    }
+}
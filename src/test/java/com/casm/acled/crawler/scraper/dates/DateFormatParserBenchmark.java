@@ -0,0 +1,83 @@
+package com.casm.acled.crawler.scraper.dates;
+
+import com.ibm.icu.text.SimpleDateFormat;
+import com.ibm.icu.util.ULocale;
+import org.junit.Test;
+
+import java.text.ParsePosition;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Parses/second over the ISO specs in DateParsers.ALL, building a new ICU formatter for every parse
+ * (the old behaviour) against the per-thread cached formatters. Not picked up by surefire; run explicitly.
+ */
+public class DateFormatParserBenchmark {
+
+    private static final int ROUNDS = 20;
+    private static final ULocale LOCALE = ULocale.ENGLISH;
+
+    private static class Example {
+        final DateFormatParser parser;
+        final String text;
+
+        Example(DateFormatParser parser, String text) {
+            this.parser = parser;
+            this.text = text;
+        }
+    }
+
+    private static List<Example> examples() {
+        Date date = new Date(120, 10, 26, 13, 43, 0);
+        List<Example> examples = new ArrayList<>();
+        for(DateParser dp : DateParsers.ALL) {
+            for(String spec : dp.getFormatSpec()) {
+                if(!spec.startsWith(DateFormatParser.PROTOCOL + ":")) {
+                    continue;
+                }
+                DateFormatParser parser = new DateFormatParser(spec.substring(DateFormatParser.PROTOCOL.length() + 1), LOCALE.getName());
+                String text = parser.buildSimpleDateFormat(LOCALE).format(date);
+                examples.add(new Example(parser, text));
+            }
+        }
+        return examples;
+    }
+
+    private static long uncached(List<Example> examples) {
+        long start = System.nanoTime();
+        for(int r = 0; r < ROUNDS; ++r) {
+            for(Example example : examples) {
+                SimpleDateFormat formatter = example.parser.buildSimpleDateFormat(LOCALE);
+                formatter.parse(example.text, new ParsePosition(0));
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long cached(List<Example> examples) {
+        long start = System.nanoTime();
+        for(int r = 0; r < ROUNDS; ++r) {
+            for(Example example : examples) {
+                example.parser.parse(example.text, LOCALE);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void benchmark() {
+        List<Example> examples = examples();
+
+        // warm up
+        uncached(examples);
+        cached(examples);
+
+        long uncached = uncached(examples);
+        long cached = cached(examples);
+
+        int parses = ROUNDS * examples.size();
+        System.out.println(String.format("%d specs, new formatter per parse: %.0f parses/s", examples.size(), parses / (uncached / 1e9)));
+        System.out.println(String.format("%d specs, cached formatters:       %.0f parses/s", examples.size(), parses / (cached / 1e9)));
+    }
+}
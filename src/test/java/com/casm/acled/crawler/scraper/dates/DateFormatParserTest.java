@@ -29,6 +29,22 @@ public class DateFormatParserTest {
     }
 
 
+    @Test
+    public void cachedFormatterTest() {
+
+        DateFormatParser first = new DateFormatParser("/dd MMM yyyy HH:mm/en_GB");
+        DateFormatParser second = new DateFormatParser("/dd MMM yyyy HH:mm/en_GB");
+
+        // Same spec and locale share a formatter on this thread; results must not depend on earlier parses
+        Optional<LocalDateTime> a = first.parse("26 Nov 2019 01:43");
+        Optional<LocalDateTime> b = second.parse("26 Nov 2019 01:43");
+        assertEquals(a, b);
+        assertEquals(LocalDateTime.of(2019, 11, 26, 1, 43), a.get());
+
+        DateFormatParser ordinals = new DateFormatParser("/ddF-MMM-yyyy//ORD");
+        assertEquals(ordinals.parse("10th-Oct-2019"), ordinals.parse("10th-Oct-2019"));
+    }
+
     @Test
     public void dateTimeTest() {
 
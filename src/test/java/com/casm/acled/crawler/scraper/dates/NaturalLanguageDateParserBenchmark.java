@@ -0,0 +1,84 @@
+package com.casm.acled.crawler.scraper.dates;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.ibm.icu.util.ULocale;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Parses/second of the in-process relative date parsing against the HTTP round trip to the python
+ * dateparser service (datetimeparser-http), uncached and through the DateParsingServiceClient cache.
+ * The remote half is skipped if the service isn't running on localhost:5555. Not picked up by surefire;
+ * run explicitly.
+ */
+public class NaturalLanguageDateParserBenchmark {
+
+    private static final int ROUNDS = 20;
+    private static final int REMOTE_ROUNDS = 2;
+
+    private static final List<String> EXAMPLES = ImmutableList.of(
+            "3 hours ago", "an hour ago", "yesterday", "2 days ago",
+            "hace 2 horas", "hace una hora", "ayer",
+            "prije 5 minuta", "prije 2 sata", "jučer",
+            "4h", "15min", "2d"
+    );
+
+    private static final NaturalLanguageDateParser PARSER = new NaturalLanguageDateParser("/.*/",
+            Lists.newArrayList(ULocale.ENGLISH, new ULocale("es"), new ULocale("hr")), "UTC+3");
+
+    private static long local(int rounds) {
+        long start = System.nanoTime();
+        for(int r = 0; r < rounds; ++r) {
+            for(String example : EXAMPLES) {
+                if(!PARSER.parse(example).isPresent()) {
+                    throw new IllegalStateException("not parsed locally: " + example);
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long uncached(int rounds) throws Exception {
+        long start = System.nanoTime();
+        for(int r = 0; r < rounds; ++r) {
+            for(String example : EXAMPLES) {
+                DateParsingServiceClient.request(example, "[\"en\",\"es\",\"hr\"]", "UTC+3");
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long cached(int rounds) {
+        long start = System.nanoTime();
+        for(int r = 0; r < rounds; ++r) {
+            for(String example : EXAMPLES) {
+                PARSER.parseRemote(example);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        local(ROUNDS);
+        long local = local(ROUNDS);
+        System.out.println(String.format("%d expressions, in-process: %.0f parses/s", EXAMPLES.size(), ROUNDS * EXAMPLES.size() / (local / 1e9)));
+
+        try {
+            uncached(1);
+        } catch (IOException e) {
+            System.out.println("parsing service not reachable, skipping HTTP comparison: " + e.getMessage());
+            return;
+        }
+        long uncached = uncached(REMOTE_ROUNDS);
+        System.out.println(String.format("%d expressions, HTTP service: %.0f parses/s", EXAMPLES.size(), REMOTE_ROUNDS * EXAMPLES.size() / (uncached / 1e9)));
+
+        DateParsingServiceClient.clear();
+        long requests = DateParsingServiceClient.requests();
+        long cached = cached(ROUNDS);
+        System.out.println(String.format("%d expressions, HTTP service, cached: %.0f parses/s (%d requests)", EXAMPLES.size(), ROUNDS * EXAMPLES.size() / (cached / 1e9), DateParsingServiceClient.requests() - requests));
+    }
+}
@@ -0,0 +1,42 @@
+package com.casm.acled.crawler.scraper.dates;
+
+import com.google.common.collect.Lists;
+import com.ibm.icu.util.ULocale;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.*;
+
+public class NaturalLanguageDateParserTest {
+
+    // 12:00 UTC, 15:00 in the source's timezone
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2020-11-26T12:00:00Z"), ZoneOffset.UTC);
+
+    private static NaturalLanguageDateParser parser(String spec, String language) {
+        return new NaturalLanguageDateParser(spec, Lists.newArrayList(new ULocale(language)), "UTC+3", CLOCK);
+    }
+
+    @Test
+    public void localRelativeDateTest() {
+
+        // None of these should need the parsing service
+        assertEquals(LocalDateTime.of(2020, 11, 26, 12, 0), parser("/.*/", "en").parse("3 hours ago").get());
+        assertEquals(LocalDateTime.of(2020, 11, 25, 15, 0), parser("/.*/", "en").parse("Yesterday").get());
+        assertEquals(LocalDateTime.of(2020, 11, 24, 15, 0), parser("/.*/", "es").parse("hace 2 días").get());
+        assertEquals(LocalDateTime.of(2020, 11, 26, 14, 0), parser("/.*/", "es").parse("Hace una hora").get());
+        assertEquals(LocalDateTime.of(2020, 11, 26, 14, 55), parser("/prije/", "hr").parse("prije 5 minuta").get());
+        assertEquals(LocalDateTime.of(2020, 11, 25, 15, 0), parser("/.*/", "bs").parse("Jučer").get());
+        assertEquals(LocalDateTime.of(2020, 11, 26, 11, 0), parser("/(\\d+d|\\d+h|\\d+min)/", "en").parse("4h").get());
+    }
+
+    @Test
+    public void triggerTest() {
+
+        // Dates not matching the trigger are never attempted, locally or remotely
+        assertFalse(parser("/prije/", "hr").parse("3 hours ago").isPresent());
+    }
+}
@@ -4,6 +4,8 @@ package com.casm.acled.crawler.scraper.keywords;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 public class KeywordFilterTest {
 
     @Test
@@ -57,4 +59,41 @@ public class KeywordFilterTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testQueryCache() throws Exception {
+        long misses = QueryCache.misses();
+
+        LuceneMatcher first = new LuceneMatcher("(cached query \"for tests\")");
+        LuceneMatcher second = new LuceneMatcher("(cached query \"for tests\")");
+
+        Assert.assertSame(first.getQuery(), second.getQuery());
+        Assert.assertEquals(misses + 1, QueryCache.misses());
+        Assert.assertTrue(second.isMatched("a query that is cached"));
+    }
+
+    @Test
+    public void testLazyHighlights() throws Exception {
+        LuceneMatcher matcher = new LuceneMatcher("(protest riot) -football");
+        String text = "A protest turned into a Riot downtown.";
+
+        LuceneMatcher.Match match = matcher.match(text);
+        Assert.assertEquals(Arrays.asList("protest", "riot"), match.getTerms());
+
+        String encoded = match.encode();
+        Assert.assertTrue(LuceneMatcher.Match.isEncoded(encoded));
+
+        String highlight = LuceneMatcher.highlight(text, LuceneMatcher.Match.decode(encoded));
+        Assert.assertEquals("</br>A <B>protest</B> turned into a <B>Riot</B> downtown.", highlight);
+    }
+
+    @Test
+    public void testLazyHighlightsPhrase() throws Exception {
+        LuceneMatcher matcher = new LuceneMatcher("(\"arma de fuego\" disparo)");
+        String text = "El disparo de un arma de fuego en la plaza de armas.";
+
+        // only the phrase's own "de" is marked, as the Highlighter would
+        LuceneMatcher.Match match = matcher.match(text);
+        Assert.assertEquals(Arrays.asList("disparo", "arma", "de", "fuego"), match.getTerms());
+        Assert.assertEquals(matcher.highlight(text), LuceneMatcher.highlight(text, match));
+    }
+}
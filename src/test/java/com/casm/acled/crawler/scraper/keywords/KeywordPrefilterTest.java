@@ -0,0 +1,84 @@
+package com.casm.acled.crawler.scraper.keywords;
+
+import com.casm.acled.crawler.util.Util;
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Differential test: the prefiltered LuceneMatcher must agree with the plain MemoryIndex match on every
+ * query/text pair.
+ */
+public class KeywordPrefilterTest {
+
+    private static String resource(String name) throws IOException {
+        return IOUtils.toString(KeywordPrefilterTest.class.getResourceAsStream("/keywords/" + name), StandardCharsets.UTF_8).trim();
+    }
+
+    private static List<String> queries() throws IOException {
+        return ImmutableList.of(
+                resource("mexico-1.txt"),
+                "(" + StringUtils.join(Util.KEYWORDS_LUCENE, " ") + ")",
+                "hello +world",
+                "+protesta -futbol",
+                "\"arma de fuego\"",
+                "(\"derechos humanos\" víctimas) AND (foros OR amnistía)",
+                "+(killed wounded) +(police army) -exercise",
+                "perd* violencia",
+                "-excluded"
+        );
+    }
+
+    private static List<String> corpus() throws IOException {
+        List<String> corpus = new ArrayList<>();
+        String article = resource("mexico-article.txt");
+
+        corpus.add(article);
+        corpus.add("");
+        corpus.add("hello world");
+        corpus.add("hello there");
+        corpus.add("Protesta contra el futbol");
+        corpus.add("The police said two people were killed; the army was not involved.");
+        corpus.add("Police killed during an exercise");
+        corpus.add("Se encontró un arma de fuego en el lugar.");
+        corpus.add("Se encontró un arma y fuego en el lugar.");
+
+        // Every sentence of the article on its own gives a spread of matching and non-matching texts
+        for(String sentence : article.split("[.?!]")) {
+            corpus.add(sentence);
+        }
+        return corpus;
+    }
+
+    @Test
+    public void testAgreesWithLucene() throws Exception {
+        for(String query : queries()) {
+            LuceneMatcher matcher = new LuceneMatcher(query);
+            for(String text : corpus()) {
+                boolean expected = matcher.isMatched(LuceneMatcher.index(text, matcher.getAnalyzer()));
+                boolean prefiltered = matcher.isMatched(text);
+                boolean mayMatch = matcher.getPrefilter().mayMatch(KeywordPrefilter.tokens(text, matcher.getAnalyzer()));
+
+                String message = StringUtils.abbreviate(query, 50) + " / " + StringUtils.abbreviate(text, 50);
+                Assert.assertEquals(message, expected, prefiltered);
+                Assert.assertTrue(message, mayMatch || !expected);
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsWithoutTerms() {
+        LuceneMatcher matcher = new LuceneMatcher("(protest riot)");
+
+        Assert.assertTrue(matcher.getPrefilter().isActive());
+        Assert.assertFalse(matcher.getPrefilter().mayMatch("nothing to see here", matcher.getAnalyzer()));
+        Assert.assertTrue(matcher.getPrefilter().mayMatch("a RIOT broke out", matcher.getAnalyzer()));
+    }
+}
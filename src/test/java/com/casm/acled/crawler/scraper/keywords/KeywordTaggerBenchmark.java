@@ -0,0 +1,86 @@
+package com.casm.acled.crawler.scraper.keywords;
+
+import com.casm.acled.crawler.scraper.ScraperFields;
+import com.casm.acled.crawler.util.Util;
+import com.google.common.collect.ImmutableList;
+import com.norconex.importer.doc.ImporterMetadata;
+import com.norconex.importer.handler.tagger.IDocumentTagger;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares one KeywordTagger per source list against a single MultiKeywordTagger, using the
+ * mexico-1 list and the default keyword list against a real Spanish article.
+ * Not picked up by surefire; run explicitly.
+ */
+public class KeywordTaggerBenchmark {
+
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2000;
+
+    private static String resource(String name) throws IOException {
+        return IOUtils.toString(KeywordTaggerBenchmark.class.getResourceAsStream("/keywords/" + name), StandardCharsets.UTF_8).trim();
+    }
+
+    private static Map<String, String> queries() throws IOException {
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("mexico-1", resource("mexico-1.txt"));
+        queries.put("default", "(" + StringUtils.join(Util.KEYWORDS_LUCENE, " ") + ")");
+        queries.put("protest", "(protest protesta protestas marcha manifestación)");
+        queries.put("violence", "(\"arma de fuego\" asesinato asesinado ejecutado ataque)");
+        queries.put("all", "");
+        return queries;
+    }
+
+    private static ImporterMetadata tag(List<? extends IDocumentTagger> taggers, String text) throws Exception {
+        ImporterMetadata metadata = new ImporterMetadata();
+        metadata.setString(ScraperFields.SCRAPED_ARTICLE, text);
+        for(IDocumentTagger tagger : taggers) {
+            tagger.tagDocument("ref", null, metadata, true);
+        }
+        return metadata;
+    }
+
+    private static long time(List<? extends IDocumentTagger> taggers, String text) throws Exception {
+        for(int i = 0; i < WARMUP; ++i) {
+            tag(taggers, text);
+        }
+        long start = System.nanoTime();
+        for(int i = 0; i < ITERATIONS; ++i) {
+            tag(taggers, text);
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Map<String, String> queries = queries();
+        String text = resource("mexico-article.txt");
+
+        List<KeywordTagger> separate = new ArrayList<>();
+        for(Map.Entry<String, String> entry : queries.entrySet()) {
+            separate.add(new KeywordTagger(ScraperFields.SCRAPED_ARTICLE, entry.getValue(), entry.getKey()));
+        }
+        List<MultiKeywordTagger> combined = ImmutableList.of(new MultiKeywordTagger(ScraperFields.SCRAPED_ARTICLE, queries));
+
+        ImporterMetadata expected = tag(separate, text);
+        ImporterMetadata actual = tag(combined, text);
+        Assert.assertEquals(expected.getStrings(ScraperFields.KEYWORD_PASSED), actual.getStrings(ScraperFields.KEYWORD_PASSED));
+        Assert.assertEquals(expected.getStrings(ScraperFields.KEYWORD_HIGHLIGHT), actual.getStrings(ScraperFields.KEYWORD_HIGHLIGHT));
+
+        long separateNanos = time(separate, text);
+        long combinedNanos = time(combined, text);
+
+        System.out.println(String.format("%d lists, separate taggers: %.1f docs/s", queries.size(), ITERATIONS / (separateNanos / 1e9)));
+        System.out.println(String.format("%d lists, multi tagger:     %.1f docs/s", queries.size(), ITERATIONS / (combinedNanos / 1e9)));
+    }
+}
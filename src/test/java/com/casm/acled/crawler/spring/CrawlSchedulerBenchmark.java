@@ -0,0 +1,125 @@
+package com.casm.acled.crawler.spring;
+
+import com.casm.acled.crawler.management.HttpConcurrencyLimit;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sites/second crawled by CrawlScheduler at increasing parallelism, against a local stub server
+ * serving a few hundred synthetic sites. Each "crawl" fetches a site's front page and the articles it
+ * links to, with a politeness delay between requests, under the global HttpConcurrencyLimit.
+ * A full Norconex crawl needs the database, so this measures the scheduling rather than the crawler.
+ * A few sites return errors, to check that their failures don't affect the others.
+ * Not picked up by surefire; run explicitly.
+ */
+public class CrawlSchedulerBenchmark {
+
+    private static final int SITES = 300;
+    private static final int ARTICLES = 5;
+    private static final long POLITENESS = 20;
+    private static final int BROKEN_EVERY = 50;
+    private static final int MAX_CONNECTIONS = 32;
+
+    private static final Pattern LINK = Pattern.compile("href=\"([^\"]+)\"");
+
+    private TestHttpServer server;
+    private String base;
+
+    @Before
+    public void start() throws IOException {
+        server = new TestHttpServer(64, exchange -> {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            int site = Integer.parseInt(path[1].substring("site-".length()));
+
+            int status = 200;
+            StringBuilder body = new StringBuilder("<html><body>");
+            if(site % BROKEN_EVERY == 0) {
+                status = 500;
+            } else if(path.length == 2) {
+                for(int i = 0; i < ARTICLES; ++i) {
+                    body.append("<a href=\"/site-").append(site).append("/article-").append(i).append("\">article</a>");
+                }
+            } else {
+                body.append("<p>synthetic article ").append(path[2]).append(" of site ").append(site).append("</p>");
+            }
+            body.append("</body></html>");
+
+            TestHttpServer.respond(exchange, status, body.toString());
+        });
+        base = server.base();
+    }
+
+    @After
+    public void stop() {
+        server.close();
+    }
+
+    private String fetch(String url) throws Exception {
+        return HttpConcurrencyLimit.call(() -> {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            int status = connection.getResponseCode();
+            if(status >= 400) {
+                try (InputStream err = connection.getErrorStream()) {
+                    if(err != null) {
+                        IOUtils.toByteArray(err);
+                    }
+                }
+                throw new IOException(url + " : " + status);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return IOUtils.toString(in, StandardCharsets.UTF_8);
+            }
+        });
+    }
+
+    private void crawl(Integer site) {
+        // every crawl must run in the ThreadGroup its logging is routed by
+        Assert.assertEquals(Integer.toString(site), Thread.currentThread().getThreadGroup().getName());
+        try {
+            String front = fetch(base + "/site-" + site + "/");
+            Matcher m = LINK.matcher(front);
+            while(m.find()) {
+                Thread.sleep(POLITENESS);
+                fetch(base + m.group(1));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void benchmark() {
+        List<Integer> sites = new ArrayList<>();
+        for(int i = 0; i < SITES; ++i) {
+            sites.add(i);
+        }
+
+        HttpConcurrencyLimit.setLimit(MAX_CONNECTIONS);
+
+        for(int parallelism : new int[]{1, 4, 16, 64}) {
+            long start = System.nanoTime();
+            Map<Integer, Throwable> failures = new CrawlScheduler(parallelism).run(sites, site -> Integer.toString(site), this::crawl);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Assert.assertEquals(SITES / BROKEN_EVERY, failures.size());
+            System.out.println(String.format("parallelism %2d: %d sites in %.1fs (%.1f sites/s), %d failed",
+                    parallelism, SITES, seconds, SITES / seconds, failures.size()));
+        }
+
+        HttpConcurrencyLimit.setLimit(HttpConcurrencyLimit.UNLIMITED);
+    }
+}
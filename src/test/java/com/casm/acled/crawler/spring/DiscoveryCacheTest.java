@@ -0,0 +1,139 @@
+package com.casm.acled.crawler.spring;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DiscoveryCacheTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private static final String ROBOTS = "User-agent: *\n" +
+            "Crawl-delay: 2\n" +
+            "Disallow: /private\n" +
+            "\n" +
+            "User-agent: CASM\n" +
+            "Crawl-delay: 5 # be gentle\n" +
+            "\n" +
+            "Sitemap: %s/sitemap.xml\n";
+
+    private TestHttpServer server;
+    private String base;
+    private UrlChecker checker;
+    private Path file;
+
+    private final AtomicInteger notModified = new AtomicInteger(0);
+    private volatile int robotsStatus = 200;
+
+    @Before
+    public void start() throws IOException {
+        server = new TestHttpServer(4, exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if(path.equals("/robots.txt")) {
+                if(robotsStatus != 200) {
+                    TestHttpServer.respond(exchange, robotsStatus, null);
+                } else if(ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    TestHttpServer.respond(exchange, 304, null);
+                } else {
+                    exchange.getResponseHeaders().add("ETag", ETAG);
+                    TestHttpServer.respond(exchange, 200, String.format(ROBOTS, base));
+                }
+            } else if(path.equals("/")) {
+                exchange.getResponseHeaders().add("Location", base + "/home");
+                TestHttpServer.respond(exchange, 301, null);
+            } else if(path.equals("/home") || path.equals("/sitemap.xml")) {
+                TestHttpServer.respond(exchange, 200, null);
+            } else {
+                TestHttpServer.respond(exchange, 404, null);
+            }
+        });
+        base = server.base();
+        checker = new UrlChecker(4, 2, 5000, "test");
+        file = Files.createTempDirectory("discovery").resolve("discovery-cache.json");
+    }
+
+    @After
+    public void stop() {
+        checker.close();
+        server.close();
+    }
+
+    private List<String> discover(DiscoveryCache cache) {
+        String url = cache.resolve(base + "/").join();
+        assertEquals(base + "/home", url);
+        List<String> candidates = Arrays.asList(DiscoveryCache.parseSitemaps(cache.robots(url).join()).iterator().next(), base + "/missing.xml");
+        return cache.check(candidates).join();
+    }
+
+    @Test
+    public void cacheTest() {
+
+        Clock now = Clock.fixed(Instant.parse("2020-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+        DiscoveryCache cache = new DiscoveryCache(file, checker, Duration.ofDays(8), now);
+        assertEquals(Arrays.asList(base + "/sitemap.xml"), discover(cache));
+        cache.save();
+
+        // a week later, from disk: nothing is requested
+        long requests = checker.requests();
+        Clock week = Clock.offset(now, Duration.ofDays(7));
+        cache = new DiscoveryCache(file, checker, Duration.ofDays(8), week);
+        assertEquals(Arrays.asList(base + "/sitemap.xml"), discover(cache));
+        assertEquals(5f, cache.crawlDelay(base + "/", "CASM Tech"), 0);
+        assertEquals(requests, checker.requests());
+
+        // past the TTL robots.txt is revalidated rather than downloaded again
+        Clock later = Clock.offset(now, Duration.ofDays(9));
+        cache = new DiscoveryCache(file, checker, Duration.ofDays(8), later);
+        assertEquals(Arrays.asList(base + "/sitemap.xml"), discover(cache));
+        assertEquals(1, notModified.get());
+    }
+
+    @Test
+    public void robotsTest() {
+        String robots = String.format(ROBOTS, "http://example.com");
+        assertEquals(5f, DiscoveryCache.parseCrawlDelay(robots, "CASM Tech"), 0);
+        assertEquals(2f, DiscoveryCache.parseCrawlDelay(robots, "other"), 0);
+        assertEquals(-1f, DiscoveryCache.parseCrawlDelay("User-agent: *\nDisallow: /\n", "CASM Tech"), 0);
+        assertEquals(Arrays.asList("http://example.com/sitemap.xml"), Arrays.asList(DiscoveryCache.parseSitemaps(robots).toArray()));
+    }
+
+    @Test
+    public void robotsErrorTest() {
+
+        Clock now = Clock.fixed(Instant.parse("2020-01-01T00:00:00Z"), ZoneOffset.UTC);
+        DiscoveryCache cache = new DiscoveryCache(file, checker, Duration.ofDays(8), now);
+        String robots = cache.robots(base + "/").join();
+        assertTrue(robots.contains("Crawl-delay: 5"));
+        cache.save();
+
+        // a server error past the TTL keeps the copy we had, and it is tried again next time
+        robotsStatus = 503;
+        long requests = checker.requests();
+        Clock later = Clock.offset(now, Duration.ofDays(9));
+        cache = new DiscoveryCache(file, checker, Duration.ofDays(8), later);
+        assertEquals(robots, cache.robots(base + "/").join());
+        assertEquals(robots, cache.robots(base + "/").join());
+        assertEquals(requests + 2, checker.requests());
+
+        // a 404 means there is none any more, which is cached
+        robotsStatus = 404;
+        assertEquals("", cache.robots(base + "/").join());
+        assertEquals("", cache.robots(base + "/").join());
+        assertEquals(requests + 3, checker.requests());
+    }
+}
@@ -0,0 +1,72 @@
+package com.casm.acled.crawler.spring;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class SharedHttpClientTest {
+
+    private TestHttpServer server;
+    private String base;
+    private SharedHttpClient client;
+
+    @Before
+    public void start() throws IOException {
+        server = new TestHttpServer(4, exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if(path.startsWith("/hop/")) {
+                int hop = Integer.parseInt(path.substring("/hop/".length()));
+                exchange.getResponseHeaders().add("Location", hop == 0 ? "/robots.txt" : "/hop/" + (hop - 1));
+                TestHttpServer.respond(exchange, 302, null);
+            } else if(path.equals("/loop")) {
+                exchange.getResponseHeaders().add("Location", base + "/loop");
+                TestHttpServer.respond(exchange, 301, null);
+            } else if(path.equals("/robots.txt")) {
+                TestHttpServer.respond(exchange, 200, "User-agent: *\nSitemap: /sitemap.xml\n");
+            } else {
+                TestHttpServer.respond(exchange, 404, null);
+            }
+        });
+        base = server.base();
+        client = new SharedHttpClient(8, 2, 5000, "test");
+    }
+
+    @After
+    public void stop() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void reuseTest() {
+        for(int i = 0; i < 10; ++i) {
+            Optional<String> robots = client.getString(base + "/robots.txt");
+            assertTrue(robots.isPresent());
+            assertTrue(robots.get().contains("Sitemap"));
+        }
+        assertFalse(client.getString(base + "/missing").isPresent());
+
+        assertEquals(11, client.requests());
+        assertEquals(1, client.connectionsOpened());
+        assertEquals(10, client.connectionsReused());
+    }
+
+    @Test
+    public void followRedirectsTest() throws IOException {
+        assertEquals(base + "/robots.txt", client.followRedirects(base + "/hop/3"));
+
+        SharedHttpClient.Status status = client.status(base + "/hop/0", false);
+        assertTrue(status.isRedirect());
+        assertEquals("/robots.txt", status.location);
+        assertTrue(client.status(base + "/hop/0", true).isOk());
+
+        // stops at the hop limit, and on a loop
+        assertEquals(base + "/hop/" + (20 - SharedHttpClient.MAX_REDIRECTS), client.followRedirects(base + "/hop/20"));
+        assertEquals(base + "/loop", client.followRedirects(base + "/loop"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.casm.acled.crawler.spring;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class SitemapWatermarksTest {
+
+    private static final String INDEX = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n" +
+            "  <sitemap><loc>%1$s/2019-12.xml</loc><lastmod>2020-01-01</lastmod></sitemap>\n" +
+            "  <sitemap><loc>%1$s/2020-01.xml</loc><lastmod>2020-02-01T00:00:00+00:00</lastmod></sitemap>\n" +
+            "  <sitemap><loc>%1$s/2020-02.xml</loc><lastmod>%2$s</lastmod></sitemap>\n" +
+            "  <sitemap><loc>%1$s/pages.xml</loc></sitemap>\n" +
+            "</sitemapindex>";
+
+    private static final String URLSET = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\"><url><loc>http://example.com/a</loc></url></urlset>";
+
+    private TestHttpServer server;
+    private String base;
+    private UrlChecker checker;
+    private Path file;
+
+    private volatile String newest = "2020-02-10T12:30Z";
+
+    @Before
+    public void start() throws IOException {
+        server = new TestHttpServer(4, exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            TestHttpServer.respond(exchange, 200, path.equals("/sitemap_index.xml") ? String.format(INDEX, base, newest) : URLSET);
+        });
+        base = server.base();
+        checker = new UrlChecker(4, 2, 5000, "test");
+        file = Files.createTempDirectory("watermarks").resolve("sitemap-watermarks.json");
+    }
+
+    @After
+    public void stop() {
+        checker.close();
+        server.close();
+    }
+
+    @Test
+    public void watermarkTest() {
+
+        List<String> sitemaps = Arrays.asList(base + "/sitemap_index.xml", base + "/sitemap.xml");
+
+        // first crawl: everything, urlsets passed through
+        SitemapWatermarks watermarks = new SitemapWatermarks(file, checker);
+        SitemapWatermarks.Expansion first = watermarks.expand(1, sitemaps, null, false);
+        assertEquals(Arrays.asList(base + "/2019-12.xml", base + "/2020-01.xml", base + "/2020-02.xml",
+                base + "/pages.xml", base + "/sitemap.xml"), first.getSitemaps());
+
+        // a crawl that didn't complete doesn't move the watermark
+        assertEquals(5, watermarks.expand(1, sitemaps, null, false).getSitemaps().size());
+
+        watermarks.advance(first);
+
+        // next crawl, from disk: only the newest child and those without a lastmod
+        watermarks = new SitemapWatermarks(file, checker);
+        SitemapWatermarks.Expansion second = watermarks.expand(1, sitemaps, null, false);
+        assertEquals(Arrays.asList(base + "/2020-02.xml", base + "/pages.xml", base + "/sitemap.xml"), second.getSitemaps());
+        assertEquals(2, second.getSkipped());
+
+        // an updated child is picked up
+        newest = "2020-03-01";
+        assertEquals(3, watermarks.expand(1, sitemaps, null, false).getSitemaps().size());
+
+        // an explicit from date reaches back past the watermark
+        assertEquals(Arrays.asList(base + "/2020-01.xml", base + "/2020-02.xml", base + "/pages.xml", base + "/sitemap.xml"),
+                watermarks.expand(1, sitemaps, LocalDate.of(2020, 1, 15), false).getSitemaps());
+
+        // a full crawl ignores the watermark, other sources aren't affected
+        assertEquals(5, watermarks.expand(1, sitemaps, null, true).getSitemaps().size());
+        assertEquals(5, watermarks.expand(2, sitemaps, null, false).getSitemaps().size());
+    }
+
+    @Test
+    public void parseTest() throws IOException {
+
+        assertNull(SitemapWatermarks.parseIndex(new ByteArrayInputStream(URLSET.getBytes(StandardCharsets.UTF_8))));
+
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(String.format(INDEX, "http://example.com", "2020-02-10T12:30:15.000Z").getBytes(StandardCharsets.UTF_8));
+        }
+        List<SitemapWatermarks.Child> children = SitemapWatermarks.parseIndex(new ByteArrayInputStream(gzipped.toByteArray()));
+        assertEquals(4, children.size());
+        assertEquals("http://example.com/2019-12.xml", children.get(0).loc);
+        assertEquals(Long.valueOf(1577836800000L), children.get(0).lastmod);
+        assertEquals(Long.valueOf(1580515200000L), children.get(1).lastmod);
+        assertEquals(Long.valueOf(1581337815000L), children.get(2).lastmod);
+        assertNull(children.get(3).lastmod);
+
+        assertEquals(Long.valueOf(1581337800000L), SitemapWatermarks.parseLastmod("2020-02-10T12:30:00"));
+        assertNull(SitemapWatermarks.parseLastmod("last tuesday"));
+    }
+}
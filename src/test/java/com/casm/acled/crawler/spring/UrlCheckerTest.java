@@ -0,0 +1,118 @@
+package com.casm.acled.crawler.spring;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class UrlCheckerTest {
+
+    private TestHttpServer server;
+    private String base;
+    private UrlChecker checker;
+
+    private final AtomicInteger gets = new AtomicInteger(0);
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicInteger maxInFlight = new AtomicInteger(0);
+
+    @Before
+    public void start() throws IOException {
+        server = new TestHttpServer(16, exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                String path = exchange.getRequestURI().getPath();
+                boolean head = exchange.getRequestMethod().equals("HEAD");
+                if(!head) {
+                    gets.incrementAndGet();
+                }
+
+                if(path.equals("/moved")) {
+                    exchange.getResponseHeaders().add("Location", base + "/sitemap.xml");
+                    TestHttpServer.respond(exchange, 301, null);
+                } else if(path.equals("/no-head") && head) {
+                    TestHttpServer.respond(exchange, 405, null);
+                } else if(path.equals("/slow")) {
+                    Thread.sleep(50);
+                    TestHttpServer.respond(exchange, 200, null);
+                } else if(path.equals("/sitemap.xml") || path.equals("/no-head")) {
+                    TestHttpServer.respond(exchange, 200, head ? null : "<urlset/>");
+                } else {
+                    TestHttpServer.respond(exchange, 404, null);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        base = server.base();
+        checker = new UrlChecker(8, 2, 5000, "test");
+    }
+
+    @After
+    public void stop() {
+        checker.close();
+        server.close();
+    }
+
+    @Test
+    public void checkTest() {
+        assertTrue(checker.check(base + "/sitemap.xml"));
+        assertFalse(checker.check(base + "/missing.xml"));
+        assertFalse(checker.check("http://127.0.0.1:1/sitemap.xml"));
+        // checks use HEAD, so no body is downloaded
+        assertEquals(0, gets.get());
+
+        // falls back to GET where HEAD isn't allowed
+        assertTrue(checker.check(base + "/no-head"));
+        assertEquals(1, gets.get());
+    }
+
+    @Test
+    public void checkAllTest() {
+        List<String> pass = checker.checkAll(Arrays.asList(base + "/missing.xml", base + "/sitemap.xml", base + "/moved"));
+        assertEquals(Arrays.asList(base + "/sitemap.xml", base + "/moved"), pass);
+    }
+
+    @Test
+    public void resolveTest() {
+        assertEquals(base + "/sitemap.xml", checker.resolve(base + "/moved"));
+        assertEquals(base + "/sitemap.xml", checker.resolve(base + "/sitemap.xml"));
+        assertEquals("http://127.0.0.1:1/", checker.resolve("http://127.0.0.1:1/"));
+    }
+
+    @Test
+    public void perHostLimitTest() {
+        String[] urls = new String[20];
+        Arrays.fill(urls, base + "/slow");
+        assertEquals(20, checker.checkAll(Arrays.asList(urls)).size());
+        assertTrue(maxInFlight.get() <= 2);
+    }
+
+    @Test
+    public void busyHostTest() {
+        // enough queued for one host to fill the pool several times over
+        String[] urls = new String[40];
+        Arrays.fill(urls, base + "/slow");
+        CompletableFuture<List<String>> busy = checker.checkAllAsync(Arrays.asList(urls));
+
+        // the same server under another name is another host, so it needn't wait for them
+        String other = base.replace("127.0.0.1", "localhost");
+        long start = System.nanoTime();
+        assertTrue(checker.checkAsync(other + "/sitemap.xml").join());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        assertFalse(busy.isDone());
+
+        assertEquals(40, busy.join().size());
+        assertTrue(maxInFlight.get() <= 3);
+    }
+}